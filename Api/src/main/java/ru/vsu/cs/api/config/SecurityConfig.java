@@ -3,6 +3,7 @@ package ru.vsu.cs.api.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -28,7 +29,11 @@ public class SecurityConfig {
                 .cors().and()
                 .authorizeHttpRequests()
                 .requestMatchers("/api/channels", "/api/chats", "/api/login", "/api/register").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/users/*/avatar").permitAll()
+                .requestMatchers(HttpMethod.HEAD, "/api/users/*/avatar").permitAll()
                 .requestMatchers("/api/**").authenticated()
+                .requestMatchers("/actuator/**").authenticated()
+                .requestMatchers("/ws/**").authenticated()
                 .anyRequest().permitAll()
                 .and()
                 .httpBasic(Customizer.withDefaults());
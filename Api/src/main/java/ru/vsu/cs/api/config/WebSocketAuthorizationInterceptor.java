@@ -0,0 +1,95 @@
+package ru.vsu.cs.api.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import ru.vsu.cs.api.services.ChannelMembershipService;
+import ru.vsu.cs.api.services.ChatService;
+import ru.vsu.cs.api.services.UserService;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Component
+@Slf4j
+public class WebSocketAuthorizationInterceptor implements ChannelInterceptor {
+    public static final String USERNAME_HEADER = "username";
+    private static final String USER_ID_ATTRIBUTE = "userId";
+    private static final Pattern TOPIC = Pattern.compile("^/topic/(chats|channels)/(\\d+)(/typing)?$");
+
+    private final UserService userService;
+    private final ChatService chatService;
+    private final ChannelMembershipService channelMembershipService;
+
+    @Autowired
+    public WebSocketAuthorizationInterceptor(UserService userService, ChatService chatService,
+                                             ChannelMembershipService channelMembershipService) {
+        this.userService = userService;
+        this.chatService = chatService;
+        this.channelMembershipService = channelMembershipService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+        switch (accessor.getCommand()) {
+            case CONNECT -> connect(accessor);
+            case SUBSCRIBE -> subscribe(accessor);
+            case SEND -> throw new MessageDeliveryException("Отправка сообщений через WebSocket не поддерживается");
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    private void connect(StompHeaderAccessor accessor) {
+        if (accessor.getUser() == null) {
+            log.warn("Unauthenticated WebSocket connection");
+            throw new MessageDeliveryException("Требуется авторизация");
+        }
+        String username = accessor.getFirstNativeHeader(USERNAME_HEADER);
+        if (username == null) {
+            log.warn("WebSocket connection without username");
+            throw new MessageDeliveryException("Не указано имя пользователя");
+        }
+        getSessionAttributes(accessor).put(USER_ID_ATTRIBUTE, userService.getUserByName(username).getId());
+    }
+
+    private void subscribe(StompHeaderAccessor accessor) {
+        Long userId = (Long) getSessionAttributes(accessor).get(USER_ID_ATTRIBUTE);
+        String destination = accessor.getDestination();
+        Matcher matcher = destination == null ? null : TOPIC.matcher(destination);
+        if (userId == null || matcher == null || !matcher.matches()) {
+            log.warn("Rejected subscription to " + destination);
+            throw new MessageDeliveryException("Нет доступа к " + destination);
+        }
+
+        long id = Long.parseLong(matcher.group(2));
+        boolean allowed = matcher.group(1).equals("chats")
+                ? chatService.getMembers(id).contains(userId)
+                : channelMembershipService.get(id, userId).isPresent();
+        if (!allowed) {
+            log.warn("User with id " + userId + " is not allowed to subscribe to " + destination);
+            throw new MessageDeliveryException("Нет доступа к " + destination);
+        }
+    }
+
+    private Map<String, Object> getSessionAttributes(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null) {
+            throw new MessageDeliveryException("Сессия WebSocket не найдена");
+        }
+        return attributes;
+    }
+}
@@ -4,25 +4,36 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.vsu.cs.api.dto.ChannelCreationDto;
 import ru.vsu.cs.api.dto.ChannelResponseDto;
+import ru.vsu.cs.api.dto.PresenceDto;
 import ru.vsu.cs.api.dto.message.ChannelMessageCreationDto;
 import ru.vsu.cs.api.dto.message.ChannelMessageDto;
 import ru.vsu.cs.api.dto.search.ChannelSearchDto;
 import ru.vsu.cs.api.models.*;
+import ru.vsu.cs.api.repositories.projections.MessageView;
 import ru.vsu.cs.api.services.*;
 import ru.vsu.cs.api.utils.ErrorResponse;
+import ru.vsu.cs.api.utils.MessageCursor;
 import ru.vsu.cs.api.utils.exceptions.ChannelException;
+import ru.vsu.cs.api.utils.exceptions.CursorException;
+import ru.vsu.cs.api.utils.exceptions.RateLimitException;
 import ru.vsu.cs.api.utils.exceptions.UserException;
 import ru.vsu.cs.api.utils.mapper.Mapper;
 
-import java.math.BigInteger;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/channels")
@@ -34,21 +45,43 @@ public class ChannelController {
     private final UserService userService;
     private final RoleService roleService;
     private final MessageService messageService;
+    private final BroadcastService broadcastService;
+    private final StreamService streamService;
+    private final UnreadService unreadService;
+    private final PresenceService presenceService;
+    private final TypingService typingService;
+    private final RateLimitService rateLimitService;
 
     @Autowired
     public ChannelController(MemberService memberService, ChannelService channelService, UserService userService,
-                             RoleService roleService, MessageService messageService) {
+                             RoleService roleService, MessageService messageService,
+                             BroadcastService broadcastService, StreamService streamService,
+                             UnreadService unreadService, PresenceService presenceService,
+                             TypingService typingService, RateLimitService rateLimitService) {
         this.memberService = memberService;
         this.channelService = channelService;
         this.userService = userService;
         this.roleService = roleService;
         this.messageService = messageService;
+        this.broadcastService = broadcastService;
+        this.streamService = streamService;
+        this.unreadService = unreadService;
+        this.presenceService = presenceService;
+        this.typingService = typingService;
+        this.rateLimitService = rateLimitService;
     }
 
     @GetMapping
     @Operation(summary = "Получение всех канналов")
-    public List<ChannelSearchDto> getChannels() {
-        return channelService.getAll().stream().map(Mapper::convertToChannelDto).toList();
+    public ResponseEntity<List<ChannelSearchDto>> getChannels(WebRequest request) {
+        String etag = channelService.getChannelsTag();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(channelService.getSummaries().stream().map(Mapper::convertToChannelDto).toList());
     }
 
     @PostMapping("/create")
@@ -62,17 +95,13 @@ public class ChannelController {
         }
 
         User user = userService.getUserByName(channelCreationDto.getUsername());
-        Channel channel = channelService.create(new Channel(user, channelCreationDto.getChannelName()));
-
-        Role role = roleService.save(new Role("Owner", true, true));
-
-        Member member = new Member(channel, user, role);
-        memberService.save(member);
+        Channel channel = channelService.create(new Channel(user, channelCreationDto.getChannelName()),
+                new Role("Owner", true, true));
 
         List<Member> members = memberService.getMembersByChannel(channel);
-        List<Message> messages = messageService.getMessagesByChannel(channel);
 
-        return new ResponseEntity<>(Mapper.convertToChannelResponseDto(channel, members, messages), HttpStatus.OK);
+        return new ResponseEntity<>(Mapper.convertToChannelResponseDto(channel, members, Collections.emptyList(),
+                null, null), HttpStatus.OK);
     }
 
     @PostMapping("/add_message")
@@ -82,13 +111,17 @@ public class ChannelController {
         if (bindingResult.hasErrors()) {
             return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
+        rateLimitService.acquire(channelMessageCreationDto.getCurrentUsername());
 
         Channel channel = channelService.getChannelByName(channelMessageCreationDto.getChannelName());
         User user = userService.getUserByName(channelMessageCreationDto.getCurrentUsername());
 
         Message message = messageService.save(new Message(user, channel, channelMessageCreationDto.getMessage()));
 
-        return new ResponseEntity<>(Mapper.convertToChannelMessageDto(message), HttpStatus.OK);
+        ChannelMessageDto channelMessageDto = Mapper.convertToChannelMessageDto(message);
+        broadcastService.sendChannelMessage(channel.getId(), channelMessageDto);
+
+        return new ResponseEntity<>(channelMessageDto, HttpStatus.OK);
     }
 
     @PostMapping("/join")
@@ -109,38 +142,94 @@ public class ChannelController {
 
     @DeleteMapping("/{id}/leave")
     @Operation(summary = "Выход из канала")
-    public ResponseEntity<HttpStatus> leave(@PathVariable("id") BigInteger id,
+    public ResponseEntity<HttpStatus> leave(@PathVariable("id") long id,
                                             @RequestParam("username") String username) {
         Member member = memberService.getMemberByUserAndChannel(userService.getUserByName(username),
                 channelService.getChannelById(id));
 
         roleService.delete(member.getRole().getId());
-        memberService.delete(member.getId());
+        memberService.delete(member);
 
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
     @PutMapping("/{id}/update")
     @Operation(summary = "Изменение имени канала")
-    public ResponseEntity<HttpStatus> updateName(@PathVariable("id") BigInteger id,
+    public ResponseEntity<HttpStatus> updateName(@PathVariable("id") long id,
                                                  @RequestParam("name") String name) {
         channelService.updateName(id, name);
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
+    @PutMapping("/{id}/read")
+    @Operation(summary = "Отметка всех сообщений канала прочитанными")
+    public ResponseEntity<HttpStatus> markRead(@PathVariable("id") long id,
+                                               @RequestParam("username") String username) {
+        unreadService.markChannelRead(userService.getUserByName(username).getId(), id);
+        return ResponseEntity.ok(HttpStatus.OK);
+    }
+
     @GetMapping("/{id}")
-    @Operation(summary = "Получение канала по id")
-    public ChannelResponseDto getChannel(@PathVariable("id") BigInteger id) {
+    @Operation(summary = "Получение канала по id (со страницей истории сообщений)")
+    public ResponseEntity<ChannelResponseDto> getChannel(@PathVariable("id") long id,
+                                                         @RequestParam(value = "before", required = false) String before,
+                                                         @RequestParam(value = "after", required = false) String after,
+                                                         @RequestParam(value = "limit", defaultValue = "" + MessageService.DEFAULT_PAGE_SIZE) int limit,
+                                                         WebRequest request) {
         Channel channel = channelService.getChannelById(id);
         List<Member> members = memberService.getMembersByChannel(channel);
-        List<Message> messages = messageService.getMessagesByChannel(channel);
+        List<MessageView> messages = messageService.getMessagesByChannel(channel, MessageCursor.decode(before),
+                MessageCursor.decode(after), limit);
+
+        String etag = channelService.getChannelTag(channel, members, messages, before, after, limit);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(Mapper.convertToChannelResponseDto(channel, members, messages, before, after));
+    }
+
+    @PutMapping("/{id}/typing")
+    @Operation(summary = "Уведомление о начале или окончании набора сообщения в канале")
+    public ResponseEntity<HttpStatus> typing(@PathVariable("id") long id,
+                                             @RequestParam("user_id") long userId,
+                                             @RequestParam(value = "typing", defaultValue = "true") boolean typing) {
+        typingService.updateChannel(id, userId, typing);
+        return ResponseEntity.ok(HttpStatus.OK);
+    }
+
+    @GetMapping("/{id}/presence")
+    @Operation(summary = "Получение статусов в сети участников канала")
+    public List<PresenceDto> getMembersPresence(@PathVariable("id") long id) {
+        List<Long> userIds = memberService.getUserIdsByChannel(id);
+        Map<Long, PresenceService.Presence> presence = presenceService.get(userIds);
+        return userIds.stream().map(userId -> Mapper.convertToPresenceDto(userId, presence.get(userId))).toList();
+    }
 
-        return Mapper.convertToChannelResponseDto(channel, members, messages);
+    @GetMapping("/{id}/since")
+    @Operation(summary = "Получение сообщений канала, отправленных после указанного сообщения")
+    public List<ChannelMessageDto> getChannelMessagesSince(@PathVariable("id") long id,
+                                                           @RequestParam("after") long after,
+                                                           @RequestParam(value = "limit", defaultValue = "" + MessageService.DEFAULT_PAGE_SIZE) int limit) {
+        Channel channel = channelService.getChannelById(id);
+        List<MessageView> messages = messageService.getMessagesByChannelAfterId(channel, after, limit);
+
+        return messages.stream().map(message -> Mapper.convertToChannelMessageDto(message, channel)).toList();
+    }
+
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Поток новых сообщений канала (Server-Sent Events)")
+    public SseEmitter streamChannel(@PathVariable("id") long id,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return streamService.subscribeToChannel(channelService.getChannelById(id), lastEventId);
     }
 
     @DeleteMapping("/delete/{id}")
     @Operation(summary = "Удаление канала")
-    public ResponseEntity<HttpStatus> delete(@PathVariable("id") BigInteger id) {
+    public ResponseEntity<HttpStatus> delete(@PathVariable("id") long id) {
         List<Member> members = memberService.getMembersByChannel(channelService.getChannelById(id));
         members.forEach(member -> roleService.delete(member.getRole().getId()));
 
@@ -166,4 +255,24 @@ public class ChannelController {
         );
         return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler
+    private ResponseEntity<ErrorResponse> cursorException(CursorException ex) {
+        ErrorResponse response = new ErrorResponse(
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler
+    private ResponseEntity<ErrorResponse> rateLimitException(RateLimitException ex) {
+        ErrorResponse response = new ErrorResponse(
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()))
+                .body(response);
+    }
 }
@@ -4,28 +4,45 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.vsu.cs.api.dto.ChatResponseDto;
 import ru.vsu.cs.api.dto.message.ChatMessageCreationDto;
 import ru.vsu.cs.api.dto.message.ChatMessageDto;
+import ru.vsu.cs.api.dto.message.ChatMessageSendDto;
 import ru.vsu.cs.api.dto.search.ChatSearchDto;
 import ru.vsu.cs.api.models.Chat;
 import ru.vsu.cs.api.models.Message;
 import ru.vsu.cs.api.models.User;
+import ru.vsu.cs.api.repositories.projections.ChatMembers;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+import ru.vsu.cs.api.repositories.projections.UserSummary;
+import ru.vsu.cs.api.services.BroadcastService;
 import ru.vsu.cs.api.services.ChatService;
 import ru.vsu.cs.api.services.MessageService;
+import ru.vsu.cs.api.services.PresenceService;
+import ru.vsu.cs.api.services.RateLimitService;
+import ru.vsu.cs.api.services.StreamService;
+import ru.vsu.cs.api.services.TypingService;
+import ru.vsu.cs.api.services.UnreadService;
 import ru.vsu.cs.api.services.UserService;
 import ru.vsu.cs.api.utils.ErrorResponse;
+import ru.vsu.cs.api.utils.MessageCursor;
 import ru.vsu.cs.api.utils.exceptions.ChatException;
+import ru.vsu.cs.api.utils.exceptions.CursorException;
 import ru.vsu.cs.api.utils.exceptions.MessageException;
+import ru.vsu.cs.api.utils.exceptions.RateLimitException;
 import ru.vsu.cs.api.utils.exceptions.UserException;
 import ru.vsu.cs.api.utils.mapper.Mapper;
 
-import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/chats")
@@ -35,17 +52,34 @@ public class ChatController {
     private final UserService userService;
     private final ChatService chatService;
     private final MessageService messageService;
+    private final BroadcastService broadcastService;
+    private final StreamService streamService;
+    private final UnreadService unreadService;
+    private final PresenceService presenceService;
+    private final TypingService typingService;
+    private final RateLimitService rateLimitService;
 
     @Autowired
-    public ChatController(UserService userService, ChatService chatService, MessageService messageService) {
+    public ChatController(UserService userService, ChatService chatService, MessageService messageService,
+                          BroadcastService broadcastService, StreamService streamService,
+                          UnreadService unreadService, PresenceService presenceService,
+                          TypingService typingService, RateLimitService rateLimitService) {
         this.userService = userService;
         this.chatService = chatService;
         this.messageService = messageService;
+        this.broadcastService = broadcastService;
+        this.streamService = streamService;
+        this.unreadService = unreadService;
+        this.presenceService = presenceService;
+        this.typingService = typingService;
+        this.rateLimitService = rateLimitService;
     }
 
     @GetMapping()
     public List<ChatSearchDto> getChats() {
-        return userService.getUsers().stream().map(Mapper::convertToChatSearchDto).toList();
+        List<UserSummary> users = userService.getUserSummaries();
+        Map<Long, PresenceService.Presence> presence = presenceService.get(users.stream().map(UserSummary::id).toList());
+        return users.stream().map(user -> Mapper.convertToChatSearchDto(user, presence.get(user.id()))).toList();
     }
 
     @PostMapping("/add_message")
@@ -55,6 +89,7 @@ public class ChatController {
         if (bindingResult.hasErrors()) {
             return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
+        rateLimitService.acquire(chatMessageCreationDto.getCurrentUsername());
 
         User currentUser = userService.getUserByName(chatMessageCreationDto.getCurrentUsername());
         User otherUser = userService.getUserByName(chatMessageCreationDto.getOtherUsername());
@@ -63,35 +98,109 @@ public class ChatController {
         Chat chat = chatService.create(Mapper.convertToChat(currentUser, otherUser));
         Message message = messageService.save(new Message(currentUser, chat, chatMessageCreationDto.getMessage()));
 
-        return new ResponseEntity<>(Mapper.convertToChatMessageDto(message), HttpStatus.OK);
+        ChatMessageDto chatMessageDto = Mapper.convertToChatMessageDto(message);
+        broadcastService.sendChatMessage(chatMessageDto);
+
+        return new ResponseEntity<>(chatMessageDto, HttpStatus.OK);
+    }
+
+    @PostMapping("/{id}/messages")
+    @Operation(summary = "Отправка сообщения в существующий чат по id")
+    public ResponseEntity<ChatMessageDto> sendMessage(@PathVariable("id") long id,
+                                                      @Valid @RequestBody ChatMessageSendDto chatMessageSendDto,
+                                                      BindingResult bindingResult) {
+        if (bindingResult.hasErrors()) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        rateLimitService.acquire(chatMessageSendDto.getCurrentUsername());
+
+        User currentUser = userService.getUserByName(chatMessageSendDto.getCurrentUsername());
+        ChatMembers members = chatService.getMembers(id);
+        if (!members.contains(currentUser.getId())) {
+            throw new ChatException("Пользователь " + currentUser.getName() + " не является участником чата: " + id);
+        }
+
+        Chat chat = Mapper.convertToChat(userService.getById(members.firstUser()),
+                userService.getById(members.secondUser()));
+        chat.setId(members.id());
+        Message message = messageService.save(new Message(currentUser, chat, chatMessageSendDto.getMessage()));
+
+        ChatMessageDto chatMessageDto = Mapper.convertToChatMessageDto(message);
+        broadcastService.sendChatMessage(chatMessageDto);
+
+        return new ResponseEntity<>(chatMessageDto, HttpStatus.OK);
+    }
+
+    @PutMapping("/{id}/read")
+    @Operation(summary = "Отметка всех сообщений чата прочитанными")
+    public ResponseEntity<HttpStatus> markRead(@PathVariable("id") long id,
+                                               @RequestParam("username") String username) {
+        unreadService.markChatRead(userService.getUserByName(username).getId(), id);
+        return ResponseEntity.ok(HttpStatus.OK);
+    }
+
+    @PutMapping("/{id}/typing")
+    @Operation(summary = "Уведомление о начале или окончании набора сообщения в чате")
+    public ResponseEntity<HttpStatus> typing(@PathVariable("id") long id,
+                                             @RequestParam("user_id") long userId,
+                                             @RequestParam(value = "typing", defaultValue = "true") boolean typing) {
+        typingService.updateChat(id, userId, typing);
+        return ResponseEntity.ok(HttpStatus.OK);
     }
 
     @DeleteMapping("/delete/{id}")
     @Operation(summary = "Удаление чата")
-    public ResponseEntity<HttpStatus> deleteChat(@PathVariable("id") BigInteger id) {
+    public ResponseEntity<HttpStatus> deleteChat(@PathVariable("id") long id) {
         chatService.delete(id);
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
     @GetMapping("/{id}")
-    @Operation(summary = "Получение чата по id")
-    public List<ChatMessageDto> getChatById(@PathVariable("id") BigInteger id) {
-        List<Message> messages = messageService.getMessagesByChat(chatService.getById(id));
+    @Operation(summary = "Получение чата по id (страница истории сообщений)")
+    public ChatResponseDto getChatById(@PathVariable("id") long id,
+                                       @RequestParam(value = "before", required = false) String before,
+                                       @RequestParam(value = "after", required = false) String after,
+                                       @RequestParam(value = "limit", defaultValue = "" + MessageService.DEFAULT_PAGE_SIZE) int limit) {
+        Chat chat = chatService.getById(id);
+        List<MessageView> messages = messageService.getMessagesByChat(chat, MessageCursor.decode(before),
+                MessageCursor.decode(after), limit);
+
+        return Mapper.convertToChatResponseDto(chat, messages, before, after);
+    }
 
-        return messages.stream().map(Mapper::convertToChatMessageDto).toList();
+    @GetMapping("/{id}/since")
+    @Operation(summary = "Получение сообщений чата, отправленных после указанного сообщения")
+    public List<ChatMessageDto> getChatMessagesSince(@PathVariable("id") long id,
+                                                     @RequestParam("after") long after,
+                                                     @RequestParam(value = "limit", defaultValue = "" + MessageService.DEFAULT_PAGE_SIZE) int limit) {
+        Chat chat = chatService.getById(id);
+        List<MessageView> messages = messageService.getMessagesByChatAfterId(chat, after, limit);
+
+        return messages.stream().map(message -> Mapper.convertToChatMessageDto(message, chat)).toList();
+    }
+
+    @GetMapping(value = "/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Поток новых сообщений чата (Server-Sent Events)")
+    public SseEmitter streamChat(@PathVariable("id") long id,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return streamService.subscribeToChat(chatService.getById(id), lastEventId);
     }
 
     @GetMapping("/usernames")
-    @Operation(summary = "Получение чата по именам (никнеймам) пользователей")
-    public ResponseEntity<List<ChatMessageDto>> getChatByUsernames(@RequestParam("first_user") String firstUser,
-                                                                   @RequestParam("second_user") String secondUser) {
+    @Operation(summary = "Получение чата по именам (никнеймам) пользователей (страница истории сообщений)")
+    public ResponseEntity<ChatResponseDto> getChatByUsernames(@RequestParam("first_user") String firstUser,
+                                                              @RequestParam("second_user") String secondUser,
+                                                              @RequestParam(value = "before", required = false) String before,
+                                                              @RequestParam(value = "after", required = false) String after,
+                                                              @RequestParam(value = "limit", defaultValue = "" + MessageService.DEFAULT_PAGE_SIZE) int limit) {
         User currentUser = userService.getUserByName(firstUser);
         User otherUser = userService.getUserByName(secondUser);
 
         Chat chat = chatService.getByUsernames(currentUser, otherUser);
-        List<Message> messages = messageService.getMessagesByChat(chat);
+        List<MessageView> messages = messageService.getMessagesByChat(chat, MessageCursor.decode(before),
+                MessageCursor.decode(after), limit);
 
-        return new ResponseEntity<>(messages.stream().map(Mapper::convertToChatMessageDto).toList(), HttpStatus.OK);
+        return new ResponseEntity<>(Mapper.convertToChatResponseDto(chat, messages, before, after), HttpStatus.OK);
     }
 
 
@@ -122,4 +231,24 @@ public class ChatController {
         );
         return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
     }
+
+    @ExceptionHandler
+    private ResponseEntity<ErrorResponse> cursorException(CursorException ex) {
+        ErrorResponse response = new ErrorResponse(
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler
+    private ResponseEntity<ErrorResponse> rateLimitException(RateLimitException ex) {
+        ErrorResponse response = new ErrorResponse(
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()))
+                .body(response);
+    }
 }
@@ -18,7 +18,6 @@ import ru.vsu.cs.api.utils.ErrorResponse;
 import ru.vsu.cs.api.utils.exceptions.MessageException;
 import ru.vsu.cs.api.utils.exceptions.UserException;
 
-import java.math.BigInteger;
 import java.time.LocalDateTime;
 
 @RestController
@@ -55,15 +54,15 @@ public class SaveMessageController {
 
     @DeleteMapping("/delete_all")
     @Operation(summary = "Удаление всех сохраннёных сообщений у пользователя")
-    public ResponseEntity<HttpStatus> deleteAllMessage(@RequestParam("user_id") BigInteger userId) {
+    public ResponseEntity<HttpStatus> deleteAllMessage(@RequestParam("user_id") long userId) {
         savedMessageService.deleteAllByUser(userService.getById(userId));
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
     @DeleteMapping("/delete")
     @Operation(summary = "Удаление конкретного сохранённого сообщения")
-    public ResponseEntity<HttpStatus> deleteMessage(@RequestParam("user_id") BigInteger userId,
-                                                    @RequestParam("message_id") BigInteger messageId) {
+    public ResponseEntity<HttpStatus> deleteMessage(@RequestParam("user_id") long userId,
+                                                    @RequestParam("message_id") long messageId) {
         savedMessageService.delete(messageService.getMessage(messageId), userService.getById(userId));
         return ResponseEntity.ok(HttpStatus.OK);
     }
@@ -2,27 +2,48 @@ package ru.vsu.cs.api.controllers;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import ru.vsu.cs.api.dto.InboxEntryDto;
+import ru.vsu.cs.api.dto.PresenceDto;
+import ru.vsu.cs.api.dto.UnreadCounterDto;
 import ru.vsu.cs.api.dto.UserResponseDto;
 import ru.vsu.cs.api.models.*;
+import ru.vsu.cs.api.services.BlobStorageService;
 import ru.vsu.cs.api.services.ChatService;
+import ru.vsu.cs.api.services.FileDownloadService;
+import ru.vsu.cs.api.services.InboxService;
 import ru.vsu.cs.api.services.MemberService;
+import ru.vsu.cs.api.services.PresenceService;
 import ru.vsu.cs.api.services.SavedMessageService;
+import ru.vsu.cs.api.services.ThumbnailService;
+import ru.vsu.cs.api.services.UnreadService;
 import ru.vsu.cs.api.services.UserService;
 import ru.vsu.cs.api.utils.ErrorResponse;
+import ru.vsu.cs.api.utils.exceptions.BlobException;
+import ru.vsu.cs.api.utils.exceptions.CursorException;
+import ru.vsu.cs.api.utils.exceptions.ImageException;
 import ru.vsu.cs.api.utils.exceptions.UserException;
 import ru.vsu.cs.api.utils.mapper.Mapper;
 
 import java.io.IOException;
-import java.math.BigInteger;
+import java.io.InputStream;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/users")
@@ -35,60 +56,142 @@ public class UserController {
     private final SavedMessageService savedMessageService;
     private final MemberService memberService;
     private final ChatService chatService;
+    private final BlobStorageService blobStorageService;
+    private final ThumbnailService thumbnailService;
+    private final FileDownloadService fileDownloadService;
+    private final UnreadService unreadService;
+    private final InboxService inboxService;
+    private final PresenceService presenceService;
+
+    @Value("${storage.avatars.max-age:31536000}")
+    private long avatarMaxAge;
 
     @Autowired
-    public UserController(UserService userService, SavedMessageService savedMessageService, MemberService memberService, ChatService chatService) {
+    public UserController(UserService userService, SavedMessageService savedMessageService, MemberService memberService,
+                          ChatService chatService, BlobStorageService blobStorageService,
+                          ThumbnailService thumbnailService, FileDownloadService fileDownloadService,
+                          UnreadService unreadService, InboxService inboxService,
+                          PresenceService presenceService) {
         this.userService = userService;
         this.savedMessageService = savedMessageService;
         this.memberService = memberService;
         this.chatService = chatService;
+        this.blobStorageService = blobStorageService;
+        this.thumbnailService = thumbnailService;
+        this.fileDownloadService = fileDownloadService;
+        this.unreadService = unreadService;
+        this.inboxService = inboxService;
+        this.presenceService = presenceService;
     }
 
     @GetMapping
-    @Operation(summary = "Получение всех пользователей")
-    public List<UserResponseDto> getUsers() {
-        List<User> users = userService.getUsers();
-        List<UserResponseDto> response = new ArrayList<>();
-
-        users.forEach(user -> {
-            List<Chat> chats = chatService.getChatsByUser(user);
-            List<Message> messages = savedMessageService.getSavedMessageByUser(user)
-                    .stream()
-                    .map(SavedMessage::getMessage)
-                    .toList();
-            List<Channel> channels = memberService.getMembersByUser(user).stream().map(Member::getChannel).toList();
+    @Operation(summary = "Получение пользователей (страница после пользователя с id after)")
+    public List<UserResponseDto> getUsers(@RequestParam(value = "after", defaultValue = "0") long after,
+                                          @RequestParam(value = "limit", defaultValue = "" + UserService.DEFAULT_PAGE_SIZE) int limit) {
+        List<User> users = userService.getUsers(after, limit);
+        if (users.isEmpty()) {
+            return Collections.emptyList();
+        }
 
-            response.add(Mapper.convertToUserResponseDto(user, chats, messages, channels));
-        });
+        Map<Long, List<Chat>> chats = chatService.getChatsByUsers(users);
+        Map<Long, List<SavedMessage>> savedMessages = savedMessageService.getSavedMessagesByUsers(users);
+        Map<Long, List<Member>> members = memberService.getMembersByUsers(users);
 
-        return response;
+        return users.stream().map(user -> Mapper.convertToUserResponseDto(
+                user,
+                chats.getOrDefault(user.getId(), Collections.emptyList()),
+                savedMessages.getOrDefault(user.getId(), Collections.emptyList()).stream()
+                        .map(SavedMessage::getMessage).toList(),
+                members.getOrDefault(user.getId(), Collections.emptyList()).stream()
+                        .map(Member::getChannel).toList()
+        )).toList();
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Получение пользователя по id")
-    public ResponseEntity<UserResponseDto> getProfile(@PathVariable("id") BigInteger id) {
+    public ResponseEntity<UserResponseDto> getProfile(@PathVariable("id") long id, WebRequest request) {
         User user = userService.getById(id);
+        String etag = userService.getProfileTag(user);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
 
-        return new ResponseEntity<>(Mapper.convertToUserResponseDto(
-                user, chatService.getChatsByUser(user),
-                savedMessageService.getSavedMessageByUser(user).stream().map(SavedMessage::getMessage).toList(),
-                memberService.getMembersByUser(user).stream().map(Member::getChannel).toList()
-        ), HttpStatus.OK);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(Mapper.convertToUserResponseDto(
+                        user, chatService.getChatsByUser(user),
+                        savedMessageService.getSavedMessageByUser(user).stream().map(SavedMessage::getMessage).toList(),
+                        memberService.getMembersByUser(user).stream().map(Member::getChannel).toList()
+                ));
+    }
+
+    @GetMapping("/{id}/unread")
+    @Operation(summary = "Получение количества непрочитанных сообщений во всех чатах и каналах пользователя")
+    public List<UnreadCounterDto> getUnread(@PathVariable("id") long id) {
+        User user = userService.getById(id);
+        return unreadService.getUnread(user.getId()).stream().map(Mapper::convertToUnreadCounterDto).toList();
+    }
+
+    @GetMapping("/{id}/inbox")
+    @Operation(summary = "Получение чатов и каналов пользователя с последним сообщением и количеством непрочитанных")
+    public List<InboxEntryDto> getInbox(@PathVariable("id") long id) {
+        User user = userService.getById(id);
+        return inboxService.getInbox(user.getId()).stream().map(Mapper::convertToInboxEntryDto).toList();
+    }
+
+    @GetMapping("/presence")
+    @Operation(summary = "Получение статусов в сети пользователей по списку id")
+    public List<PresenceDto> getPresence(@RequestParam("ids") List<Long> ids) {
+        Map<Long, PresenceService.Presence> presence = presenceService.get(ids);
+        return ids.stream().distinct().map(id -> Mapper.convertToPresenceDto(id, presence.get(id))).toList();
+    }
+
+    @PutMapping("/{id}/presence")
+    @Operation(summary = "Отметка присутствия пользователя в сети (heartbeat)")
+    public ResponseEntity<HttpStatus> heartbeat(@PathVariable("id") long id) {
+        presenceService.heartbeat(id);
+        return ResponseEntity.ok(HttpStatus.OK);
+    }
+
+    @DeleteMapping("/{id}/presence")
+    @Operation(summary = "Выход пользователя из сети")
+    public ResponseEntity<HttpStatus> disconnect(@PathVariable("id") long id) {
+        presenceService.disconnect(id);
+        return ResponseEntity.ok(HttpStatus.OK);
     }
 
     @GetMapping("/email")
     @Operation(summary = "Получение id пользователя по его email (почте)")
-    public BigInteger getUserId(@RequestParam("email") String email) {
+    public long getUserId(@RequestParam("email") String email) {
         return userService.getUserByEmail(email).getId();
     }
 
+    @GetMapping("/{id}/avatar")
+    @Operation(summary = "Получение фотографии аккаунта (аватара) пользователя")
+    public void getAvatar(@PathVariable("id") long id,
+                          @RequestParam(value = "v", required = false) String version,
+                          @RequestParam(value = "size", required = false) Integer size,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String hash = userService.getAvatarHash(id);
+        String key = size == null ? hash : thumbnailService.resolve(hash, size);
+        boolean exact = size == null || !key.equals(hash);
+        CacheControl cacheControl = exact && hash.equals(version)
+                ? CacheControl.maxAge(avatarMaxAge, TimeUnit.SECONDS).cachePublic().immutable()
+                : CacheControl.noCache().cachePublic();
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline().build().toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        fileDownloadService.send(blobStorageService.getPath(key), blobStorageService.getContentType(key),
+                "\"" + key + "\"", cacheControl, request, response);
+    }
 
     @PutMapping(value = "/{id}/update/image", consumes = {"multipart/form-data"})
     @Operation(summary = "Обновление фотографии акканута (аватара) пользователя")
-    public ResponseEntity<HttpStatus> updateImage(@PathVariable("id") BigInteger id,
+    public ResponseEntity<HttpStatus> updateImage(@PathVariable("id") long id,
                                                   @RequestParam("file") MultipartFile multipartFile) {
-        try {
-            userService.updateImage(id, multipartFile.getBytes());
+        try (InputStream image = multipartFile.getInputStream()) {
+            userService.updateImage(id, image);
         } catch (IOException e) {
             return new ResponseEntity<>(HttpStatus.METHOD_NOT_ALLOWED);
         }
@@ -97,7 +200,7 @@ public class UserController {
 
     @PutMapping(value = "/{id}/update/email")
     @Operation(summary = "Обновление email (почты) у пользователя")
-    public ResponseEntity<HttpStatus> updateEmail(@PathVariable("id") BigInteger id,
+    public ResponseEntity<HttpStatus> updateEmail(@PathVariable("id") long id,
                                                   @RequestParam("email") String email) {
         userService.updateEmail(id, email);
         return ResponseEntity.ok(HttpStatus.OK);
@@ -105,7 +208,7 @@ public class UserController {
 
     @PutMapping(value = "/{id}/update/name")
     @Operation(summary = "Обновление имени (никнейма) у пользователя")
-    public ResponseEntity<HttpStatus> updateName(@PathVariable("id") BigInteger id,
+    public ResponseEntity<HttpStatus> updateName(@PathVariable("id") long id,
                                                  @RequestParam("name") String name) {
         userService.updateName(id, name);
         return ResponseEntity.ok(HttpStatus.OK);
@@ -113,7 +216,7 @@ public class UserController {
 
     @PutMapping(value = "/{id}/update/password")
     @Operation(summary = "Обновление пароля у пользователя")
-    public ResponseEntity<HttpStatus> updatePassword(@PathVariable("id") BigInteger id,
+    public ResponseEntity<HttpStatus> updatePassword(@PathVariable("id") long id,
                                                      @RequestParam(value = "last_password", required = false) String lastPassword,
                                                      @RequestParam("new_password") String newPassword) {
         userService.updatePassword(id, lastPassword, newPassword);
@@ -122,14 +225,14 @@ public class UserController {
 
     @DeleteMapping("/{id}/delete_image")
     @Operation(summary = "Удаление фотографии (аватара)")
-    public ResponseEntity<HttpStatus> deleteImage(@PathVariable("id") BigInteger id) {
+    public ResponseEntity<HttpStatus> deleteImage(@PathVariable("id") long id) {
         userService.updateImage(id, null);
         return ResponseEntity.ok(HttpStatus.OK);
     }
 
     @DeleteMapping("/{id}/delete")
     @Operation(summary = "Удаление аккаунта")
-    public ResponseEntity<HttpStatus> delete(@PathVariable("id") BigInteger id) {
+    public ResponseEntity<HttpStatus> delete(@PathVariable("id") long id) {
         userService.delete(id);
         return ResponseEntity.ok(HttpStatus.OK);
     }
@@ -143,6 +246,33 @@ public class UserController {
         return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler
+    private ResponseEntity<ErrorResponse> blobException(BlobException ex) {
+        ErrorResponse response = new ErrorResponse(
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @ExceptionHandler
+    private ResponseEntity<ErrorResponse> imageException(ImageException ex) {
+        ErrorResponse response = new ErrorResponse(
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(response, HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    @ExceptionHandler
+    private ResponseEntity<ErrorResponse> cursorException(CursorException ex) {
+        ErrorResponse response = new ErrorResponse(
+                ex.getMessage(),
+                LocalDateTime.now()
+        );
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+
     @ExceptionHandler()
     private ResponseEntity<ErrorResponse> fileMaxSizeException(MaxUploadSizeExceededException ex) {
         ErrorResponse response = new ErrorResponse(
@@ -16,4 +16,8 @@ public class ChannelResponseDto {
     private UserSupportingDto creator;
     private List<MemberSupportingDto> members;
     private List<ChannelMessageDto> messages;
+    @Schema(description = "Курсор для загрузки более старых сообщений (параметр before)")
+    private String previousCursor;
+    @Schema(description = "Курсор для загрузки более новых сообщений (параметр after)")
+    private String nextCursor;
 }
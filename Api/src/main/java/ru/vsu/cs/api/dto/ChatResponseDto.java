@@ -0,0 +1,19 @@
+package ru.vsu.cs.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import ru.vsu.cs.api.dto.message.ChatMessageDto;
+import ru.vsu.cs.api.dto.supporting.ChatSupportingDto;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Страница истории сообщений чата")
+public class ChatResponseDto {
+    private ChatSupportingDto chat;
+    private List<ChatMessageDto> messages;
+    @Schema(description = "Курсор для загрузки более старых сообщений (параметр before)")
+    private String previousCursor;
+    @Schema(description = "Курсор для загрузки более новых сообщений (параметр after)")
+    private String nextCursor;
+}
@@ -0,0 +1,16 @@
+package ru.vsu.cs.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import ru.vsu.cs.api.dto.supporting.MessagePreviewSupportingDto;
+
+@Data
+@Schema(description = "Чат или канал пользователя с последним сообщением")
+public class InboxEntryDto {
+    private Long chatId;
+    private Long channelId;
+    private String name;
+    private String avatarUrl;
+    private long unread;
+    private MessagePreviewSupportingDto lastMessage;
+}
@@ -0,0 +1,14 @@
+package ru.vsu.cs.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Schema(description = "Статус пользователя в сети")
+public class PresenceDto {
+    private Long userId;
+    private boolean online;
+    private LocalDateTime lastSeen;
+}
@@ -0,0 +1,13 @@
+package ru.vsu.cs.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "Событие набора текста пользователем в чате или канале")
+public class TypingDto {
+    private Long chatId;
+    private Long channelId;
+    private Long userId;
+    private boolean typing;
+}
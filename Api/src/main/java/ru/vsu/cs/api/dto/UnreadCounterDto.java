@@ -0,0 +1,14 @@
+package ru.vsu.cs.api.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+@Data
+@Schema(description = "Количество непрочитанных сообщений в чате или канале")
+public class UnreadCounterDto {
+    private Long chatId;
+    private Long channelId;
+    private long unread;
+    private Long lastMessageId;
+    private Long lastReadMessageId;
+}
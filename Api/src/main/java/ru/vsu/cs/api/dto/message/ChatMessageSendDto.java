@@ -0,0 +1,14 @@
+package ru.vsu.cs.api.dto.message;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+@Schema(description = "Информация, необходимая для отправки сообщения в существующий чат")
+public class ChatMessageSendDto {
+    @NotNull
+    private String currentUsername;
+    @NotNull
+    private String message;
+}
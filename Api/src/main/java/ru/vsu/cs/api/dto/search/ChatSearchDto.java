@@ -3,9 +3,13 @@ package ru.vsu.cs.api.dto.search;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 @Data
 @Schema(description = "Информация о найденном чате")
 public class ChatSearchDto {
     private String name;
-    private byte[] image;
+    private String avatarUrl;
+    private boolean online;
+    private LocalDateTime lastSeen;
 }
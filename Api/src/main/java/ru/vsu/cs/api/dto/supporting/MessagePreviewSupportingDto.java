@@ -0,0 +1,15 @@
+package ru.vsu.cs.api.dto.supporting;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Schema(description = "Последнее сообщение чата или канала")
+public class MessagePreviewSupportingDto {
+    private Long id;
+    private String data;
+    private LocalDateTime date;
+    private UserSupportingDto sender;
+}
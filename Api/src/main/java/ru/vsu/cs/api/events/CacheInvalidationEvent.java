@@ -0,0 +1,17 @@
+package ru.vsu.cs.api.events;
+
+public record CacheInvalidationEvent(Type type, long id) {
+    public enum Type {
+        ALL, USER, CHAT, CHANNEL, ROLE
+    }
+
+    public static CacheInvalidationEvent parse(String payload) {
+        int index = payload.indexOf(':');
+        return new CacheInvalidationEvent(Type.valueOf(payload.substring(0, index)),
+                Long.parseLong(payload.substring(index + 1)));
+    }
+
+    public String toPayload() {
+        return type + ":" + id;
+    }
+}
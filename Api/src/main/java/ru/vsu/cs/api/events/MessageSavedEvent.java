@@ -0,0 +1,24 @@
+package ru.vsu.cs.api.events;
+
+import ru.vsu.cs.api.models.Message;
+
+public record MessageSavedEvent(Type type, long conversationId, long messageId) {
+    public enum Type {
+        CHAT, CHANNEL
+    }
+
+    public static MessageSavedEvent of(Message message) {
+        return message.getChannel() == null
+                ? new MessageSavedEvent(Type.CHAT, message.getChat().getId(), message.getId())
+                : new MessageSavedEvent(Type.CHANNEL, message.getChannel().getId(), message.getId());
+    }
+
+    public static MessageSavedEvent parse(String payload) {
+        String[] parts = payload.split(":");
+        return new MessageSavedEvent(Type.valueOf(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    }
+
+    public String toPayload() {
+        return type + ":" + conversationId + ":" + messageId;
+    }
+}
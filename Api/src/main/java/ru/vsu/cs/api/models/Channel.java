@@ -5,7 +5,6 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigInteger;
 import java.util.List;
 
 @Entity
@@ -15,10 +14,15 @@ import java.util.List;
 @Schema(description = "Информация о канале")
 public class Channel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private BigInteger id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "channels_seq")
+    @SequenceGenerator(name = "channels_seq", sequenceName = "channels_seq", allocationSize = 50)
+    private Long id;
 
-    @ManyToOne
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "creator", referencedColumnName = "id")
     private User creator;
 
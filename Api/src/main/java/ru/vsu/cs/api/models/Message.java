@@ -5,8 +5,8 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigInteger;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Entity
 @Table(name = "messages")
@@ -15,18 +15,23 @@ import java.time.LocalDateTime;
 @Schema(description = "Информация о сообщении")
 public class Message {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private BigInteger id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_seq")
+    @SequenceGenerator(name = "messages_seq", sequenceName = "messages_seq", allocationSize = 1)
+    private Long id;
 
-    @ManyToOne
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender", referencedColumnName = "id")
     private User sender;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "chat", referencedColumnName = "id")
     private Chat chat;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "channel", referencedColumnName = "id")
     private Channel channel;
 
@@ -40,13 +45,13 @@ public class Message {
         this.sender = sender;
         this.chat = chat;
         this.data = data;
-        this.date = LocalDateTime.now();
+        this.date = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     public Message(User sender, Channel channel, String data) {
         this.sender = sender;
         this.channel = channel;
         this.data = data;
-        this.date = LocalDateTime.now();
+        this.date = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 }
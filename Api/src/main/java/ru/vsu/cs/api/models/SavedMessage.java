@@ -5,8 +5,6 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigInteger;
-
 @Entity
 @Table(name = "saved_messages")
 @Data
@@ -14,14 +12,15 @@ import java.math.BigInteger;
 @Schema(description = "Информация о сохранённом сообщении")
 public class SavedMessage {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private BigInteger id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "saved_messages_seq")
+    @SequenceGenerator(name = "saved_messages_seq", sequenceName = "saved_messages_seq", allocationSize = 50)
+    private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "message_id", referencedColumnName = "id")
     private Message message;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", referencedColumnName = "id")
     private User user;
 
@@ -5,8 +5,6 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigInteger;
-
 @Entity
 @Table(name = "users")
 @Data
@@ -14,8 +12,13 @@ import java.math.BigInteger;
 @Schema(description = "Информация о пользователе")
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private BigInteger id;
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
+    private Long id;
+
+    @Version
+    @Column(name = "version")
+    private Long version;
 
     @Column(name = "name")
     private String name;
@@ -26,7 +29,7 @@ public class User {
     @Column(name = "password")
     private String password;
 
-    @Column(name = "image")
-    private byte[] image;
+    @Column(name = "avatar_hash")
+    private String avatarHash;
 
 }
@@ -1,13 +1,27 @@
 package ru.vsu.cs.api.repositories;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.vsu.cs.api.models.Channel;
+import ru.vsu.cs.api.repositories.projections.ChannelSummary;
 
-import java.math.BigInteger;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ChannelRepository extends JpaRepository<Channel, BigInteger> {
+public interface ChannelRepository extends JpaRepository<Channel, Long> {
+    @Override
+    @EntityGraph(attributePaths = {"creator"})
+    Optional<Channel> findById(Long id);
+
     Optional<Channel> findByName(String name);
+
+    @Query("select new ru.vsu.cs.api.repositories.projections.ChannelSummary(c.id, c.name) from Channel c " +
+            "order by c.id")
+    List<ChannelSummary> findSummaries();
+
+    @Query(value = "select concat_ws('.', count(*), sum(id), sum(version)) from channels", nativeQuery = true)
+    String findChannelsState();
 }
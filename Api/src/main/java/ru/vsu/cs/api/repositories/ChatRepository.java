@@ -1,24 +1,45 @@
 package ru.vsu.cs.api.repositories;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.vsu.cs.api.models.Chat;
 import ru.vsu.cs.api.models.User;
+import ru.vsu.cs.api.repositories.projections.ChatMembers;
 
-import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ChatRepository extends JpaRepository<Chat, BigInteger> {
+public interface ChatRepository extends JpaRepository<Chat, Long> {
 
-    @Query(value = "select * from chats where (first_user = :firstUser and second_user = :secondUser) or " +
-                "(first_user = :secondUser and second_user = :firstUser)",
+    @Override
+    @EntityGraph(attributePaths = {"userFirst", "userSecond"})
+    Optional<Chat> findById(Long id);
+
+    @EntityGraph(attributePaths = {"userFirst", "userSecond"})
+    @Query("select c from Chat c where least(c.userFirst.id, c.userSecond.id) = :low " +
+            "and greatest(c.userFirst.id, c.userSecond.id) = :high")
+    Optional<Chat> findByPair(@Param("low") long low, @Param("high") long high);
+
+    @Query("select new ru.vsu.cs.api.repositories.projections.ChatMembers(c.id, c.userFirst.id, c.userSecond.id) " +
+            "from Chat c where c.id = :id")
+    Optional<ChatMembers> findMembersById(@Param("id") long id);
+
+    @Modifying
+    @Query(value = "insert into chats (first_user, second_user) values (:firstUser, :secondUser) " +
+            "on conflict (least(first_user, second_user), greatest(first_user, second_user)) do nothing",
             nativeQuery = true)
-    Optional<Chat> findByUsernames(@Param("firstUser") BigInteger currentUsername,
-                                   @Param("secondUser") BigInteger otherUsername);
+    int insertIfAbsent(@Param("firstUser") long firstUser, @Param("secondUser") long secondUser);
 
+    @EntityGraph(attributePaths = {"userFirst", "userSecond"})
     List<Chat> findByUserFirstOrUserSecond(User sender, User recipient);
+
+    @Query("select c from Chat c join fetch c.userFirst join fetch c.userSecond " +
+            "where c.userFirst in :users or c.userSecond in :users order by c.id")
+    List<Chat> findByUsers(@Param("users") Collection<User> users);
 }
@@ -1,18 +1,32 @@
 package ru.vsu.cs.api.repositories;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import ru.vsu.cs.api.models.Channel;
 import ru.vsu.cs.api.models.Member;
 import ru.vsu.cs.api.models.User;
+import ru.vsu.cs.api.repositories.projections.ChannelMember;
 
-import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
-public interface MemberRepository extends JpaRepository<Member, BigInteger> {
+public interface MemberRepository extends JpaRepository<Member, Long> {
+    @EntityGraph(attributePaths = {"channel"})
     List<Member> findByUser(User user);
-    List<Member> findByChannel(Channel channel);
-    Optional<Member> findByUserAndChannel(User user, Channel channel);
+
+    @Query("select m from Member m join fetch m.user join fetch m.channel ch join fetch ch.creator " +
+            "left join fetch m.role where m.user in :users order by m.id")
+    List<Member> findByUsers(@Param("users") Collection<User> users);
+
+    @Query("select new ru.vsu.cs.api.repositories.projections.ChannelMember(m.id, m.user.id, r.id, r.name, " +
+            "r.isAdmin, r.isCreator) from Member m left join m.role r where m.channel.id = :channelId order by m.id")
+    List<ChannelMember> findChannelMembers(@Param("channelId") long channelId);
+
+    @Modifying
+    @Query("update Member m set m.version = m.version + 1 where m.id = :id")
+    void incrementVersion(@Param("id") long id);
 }
@@ -1,16 +1,59 @@
 package ru.vsu.cs.api.repositories;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.vsu.cs.api.models.Channel;
 import ru.vsu.cs.api.models.Chat;
 import ru.vsu.cs.api.models.Message;
+import ru.vsu.cs.api.repositories.projections.MessageView;
 
-import java.math.BigInteger;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface MessageRepository extends JpaRepository<Message, BigInteger> {
-    List<Message> findByChat(Chat chat);
-    List<Message> findByChannel(Channel channel);
+public interface MessageRepository extends JpaRepository<Message, Long> {
+    String SELECT_VIEW = "select new ru.vsu.cs.api.repositories.projections.MessageView(" +
+            "m.id, m.data, m.date, s.id, s.name, s.avatarHash) from Message m join m.sender s ";
+
+    @EntityGraph(attributePaths = {"sender", "chat.userFirst", "chat.userSecond", "channel"})
+    @Query("select m from Message m where m.id = :id")
+    Optional<Message> findWithContextById(@Param("id") long id);
+
+    @Query(SELECT_VIEW + "where m.chat = :chat and m.id > :id order by m.id asc")
+    List<MessageView> findByChatAfterId(@Param("chat") Chat chat, @Param("id") long id, Pageable pageable);
+
+    @Query(SELECT_VIEW + "where m.channel = :channel and m.id > :id order by m.id asc")
+    List<MessageView> findByChannelAfterId(@Param("channel") Channel channel, @Param("id") long id,
+                                           Pageable pageable);
+
+    @Query(SELECT_VIEW + "where m.chat = :chat order by m.date desc, m.id desc")
+    List<MessageView> findLatestByChat(@Param("chat") Chat chat, Pageable pageable);
+
+    @Query(SELECT_VIEW + "where m.chat = :chat and (m.date, m.id) < (:date, :id) " +
+            "order by m.date desc, m.id desc")
+    List<MessageView> findByChatBefore(@Param("chat") Chat chat, @Param("date") LocalDateTime date,
+                                       @Param("id") long id, Pageable pageable);
+
+    @Query(SELECT_VIEW + "where m.chat = :chat and (m.date, m.id) > (:date, :id) " +
+            "order by m.date asc, m.id asc")
+    List<MessageView> findByChatAfter(@Param("chat") Chat chat, @Param("date") LocalDateTime date,
+                                      @Param("id") long id, Pageable pageable);
+
+    @Query(SELECT_VIEW + "where m.channel = :channel order by m.date desc, m.id desc")
+    List<MessageView> findLatestByChannel(@Param("channel") Channel channel, Pageable pageable);
+
+    @Query(SELECT_VIEW + "where m.channel = :channel and (m.date, m.id) < (:date, :id) " +
+            "order by m.date desc, m.id desc")
+    List<MessageView> findByChannelBefore(@Param("channel") Channel channel, @Param("date") LocalDateTime date,
+                                          @Param("id") long id, Pageable pageable);
+
+    @Query(SELECT_VIEW + "where m.channel = :channel and (m.date, m.id) > (:date, :id) " +
+            "order by m.date asc, m.id asc")
+    List<MessageView> findByChannelAfter(@Param("channel") Channel channel, @Param("date") LocalDateTime date,
+                                         @Param("id") long id, Pageable pageable);
 }
@@ -1,18 +1,28 @@
 package ru.vsu.cs.api.repositories;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.vsu.cs.api.models.Message;
 import ru.vsu.cs.api.models.SavedMessage;
 import ru.vsu.cs.api.models.User;
 
-import java.math.BigInteger;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface SavedMessageRepository extends JpaRepository<SavedMessage, BigInteger> {
+public interface SavedMessageRepository extends JpaRepository<SavedMessage, Long> {
+    @EntityGraph(attributePaths = {"message.sender", "message.chat.userFirst", "message.chat.userSecond",
+            "message.channel"})
     List<SavedMessage> findByUser(User user);
 
+    @Query("select s from SavedMessage s join fetch s.user join fetch s.message m join fetch m.sender " +
+            "left join fetch m.chat c left join fetch c.userFirst left join fetch c.userSecond " +
+            "left join fetch m.channel ch left join fetch ch.creator where s.user in :users order by s.id")
+    List<SavedMessage> findByUsers(@Param("users") Collection<User> users);
+
     void deleteAllByUser(User user);
 
     void deleteByMessageAndUser(Message message, User user);
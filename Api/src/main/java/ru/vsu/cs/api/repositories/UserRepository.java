@@ -1,14 +1,51 @@
 package ru.vsu.cs.api.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.vsu.cs.api.models.User;
+import ru.vsu.cs.api.repositories.projections.UserSummary;
 
-import java.math.BigInteger;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, BigInteger> {
+public interface UserRepository extends JpaRepository<User, Long> {
    Optional<User> findByEmail(String email);
    Optional<User> findByName(String name);
+
+   List<User> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+   @Query("select new ru.vsu.cs.api.repositories.projections.UserSummary(u.id, u.name, u.avatarHash) " +
+           "from User u order by u.id")
+   List<UserSummary> findSummaries();
+
+   @Query(value = "select concat_ws(':', u.version, " +
+           "(select concat_ws('.', count(*), sum(c.id), sum(f.version + s.version)) from chats c " +
+           "join users f on f.id = c.first_user join users s on s.id = c.second_user " +
+           "where c.first_user = u.id or c.second_user = u.id), " +
+           "(select concat_ws('.', count(*), sum(sm.id), sum(m.version), sum(sender.version), " +
+           "sum(coalesce(ch.version, 0)), sum(coalesce(f.version + s.version, 0))) from saved_messages sm " +
+           "join messages m on m.id = sm.message_id join users sender on sender.id = m.sender " +
+           "left join channels ch on ch.id = m.channel left join chats c on c.id = m.chat " +
+           "left join users f on f.id = c.first_user left join users s on s.id = c.second_user " +
+           "where sm.user_id = u.id), " +
+           "(select concat_ws('.', count(*), sum(mb.id), sum(ch.version)) from members mb " +
+           "join channels ch on ch.id = mb.channel_id where mb.user_id = u.id)) " +
+           "from users u where u.id = :id", nativeQuery = true)
+   String findProfileState(@Param("id") long id);
+
+   @Query(value = "select image from users where id = :id", nativeQuery = true)
+   byte[] findImageById(@Param("id") long id);
+
+   @Modifying
+   @Query(value = "update users set image = :image where id = :id", nativeQuery = true)
+   void updateImage(@Param("id") long id, @Param("image") byte[] image);
+
+   @Modifying
+   @Query(value = "update users set image = null where id = :id", nativeQuery = true)
+   void clearImage(@Param("id") long id);
 }
@@ -0,0 +1,4 @@
+package ru.vsu.cs.api.repositories.projections;
+
+public record ChannelMember(Long id, Long userId, Long roleId, String roleName, Boolean isAdmin, Boolean isCreator) {
+}
@@ -0,0 +1,4 @@
+package ru.vsu.cs.api.repositories.projections;
+
+public record ChannelSummary(Long id, String name) {
+}
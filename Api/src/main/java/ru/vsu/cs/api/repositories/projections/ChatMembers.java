@@ -0,0 +1,7 @@
+package ru.vsu.cs.api.repositories.projections;
+
+public record ChatMembers(Long id, Long firstUser, Long secondUser) {
+    public boolean contains(long userId) {
+        return firstUser == userId || secondUser == userId;
+    }
+}
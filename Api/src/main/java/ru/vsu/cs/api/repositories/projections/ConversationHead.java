@@ -0,0 +1,13 @@
+package ru.vsu.cs.api.repositories.projections;
+
+public record ConversationHead(Long chatId, Long channelId, Long peerId, String name, String peerAvatarHash,
+                               long messageCount, long readCount, MessageView lastMessage) {
+    public long unread() {
+        return Math.max(0, messageCount - readCount);
+    }
+
+    public ConversationHead withReadCount(long readCount) {
+        return new ConversationHead(chatId, channelId, peerId, name, peerAvatarHash, messageCount, readCount,
+                lastMessage);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.vsu.cs.api.repositories.projections;
+
+import java.time.LocalDateTime;
+
+public record MessageView(Long id, String data, LocalDateTime date, Long senderId, String senderName,
+                          String senderAvatarHash) {
+}
@@ -0,0 +1,12 @@
+package ru.vsu.cs.api.repositories.projections;
+
+public record UnreadCounter(Long chatId, Long channelId, long messageCount, Long lastMessageId, long readCount,
+                            Long lastReadMessageId) {
+    public long unread() {
+        return Math.max(0, messageCount - readCount);
+    }
+
+    public UnreadCounter withRead(long readCount, Long lastReadMessageId) {
+        return new UnreadCounter(chatId, channelId, messageCount, lastMessageId, readCount, lastReadMessageId);
+    }
+}
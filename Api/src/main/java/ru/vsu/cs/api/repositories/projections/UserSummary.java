@@ -0,0 +1,4 @@
+package ru.vsu.cs.api.repositories.projections;
+
+public record UserSummary(Long id, String name, String avatarHash) {
+}
@@ -0,0 +1,114 @@
+package ru.vsu.cs.api.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.vsu.cs.api.utils.ImageFormat;
+import ru.vsu.cs.api.utils.exceptions.BlobException;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+@Service
+@Slf4j
+public class BlobStorageService {
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private final Path root;
+
+    public BlobStorageService(@Value("${storage.blobs.path:blobs}") String root) {
+        this.root = Path.of(root).toAbsolutePath();
+    }
+
+    public void put(String key, byte[] data) {
+        if (exists(key)) {
+            return;
+        }
+        store(key, output -> output.write(data));
+    }
+
+    public String put(InputStream input) {
+        MessageDigest digest = getDigest();
+        Path temp = write(output -> input.transferTo(new DigestOutputStream(output, digest)));
+        String key = HexFormat.of().formatHex(digest.digest());
+        move(temp, key);
+        return key;
+    }
+
+    public boolean exists(String key) {
+        return Files.exists(getPath(key));
+    }
+
+    public Path getPath(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    public String getContentType(String key) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(getPath(key).toFile())) {
+            String contentType = input == null ? null : ImageFormat.getContentType(input);
+            return contentType == null ? DEFAULT_CONTENT_TYPE : contentType;
+        } catch (IOException e) {
+            throw new BlobException("Не удалось прочитать файл: " + key);
+        }
+    }
+
+    private void store(String key, BlobWriter writer) {
+        move(write(writer), key);
+    }
+
+    private Path write(BlobWriter writer) {
+        try {
+            Files.createDirectories(root);
+            Path temp = Files.createTempFile(root, "blob", ".tmp");
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                writer.write(output);
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            return temp;
+        } catch (IOException e) {
+            log.error("Failed to write blob", e);
+            throw new BlobException("Не удалось сохранить файл");
+        }
+    }
+
+    private void move(Path temp, String key) {
+        Path path = getPath(key);
+        try {
+            if (Files.exists(path)) {
+                Files.delete(temp);
+                return;
+            }
+            Files.createDirectories(path.getParent());
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.info("Blob " + key + " stored (" + Files.size(path) + " bytes)");
+        } catch (IOException e) {
+            log.error("Failed to store blob " + key, e);
+            throw new BlobException("Не удалось сохранить файл: " + key);
+        }
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlobWriter {
+        void write(OutputStream output) throws IOException;
+    }
+}
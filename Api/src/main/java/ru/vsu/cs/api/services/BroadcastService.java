@@ -0,0 +1,106 @@
+package ru.vsu.cs.api.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import ru.vsu.cs.api.dto.message.ChannelMessageDto;
+import ru.vsu.cs.api.dto.TypingDto;
+import ru.vsu.cs.api.dto.message.ChatMessageDto;
+import ru.vsu.cs.api.events.MessageSavedEvent;
+import ru.vsu.cs.api.models.Message;
+import ru.vsu.cs.api.utils.exceptions.MessageException;
+import ru.vsu.cs.api.utils.mapper.Mapper;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Slf4j
+public class BroadcastService {
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StreamService streamService;
+    private final MessageService messageService;
+    private final ExecutorService remoteDelivery;
+
+    @Autowired
+    public BroadcastService(SimpMessagingTemplate messagingTemplate, StreamService streamService,
+                            MessageService messageService,
+                            @Value("${notifications.delivery-queue-size:10000}") int queueSize) {
+        this.messagingTemplate = messagingTemplate;
+        this.streamService = streamService;
+        this.messageService = messageService;
+        this.remoteDelivery = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "remote-message-delivery");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> log.warn("Remote message delivery queue is full, message dropped"));
+    }
+
+    public static String getChatTopic(long chatId) {
+        return "/topic/chats/" + chatId;
+    }
+
+    public static String getChannelTopic(long channelId) {
+        return "/topic/channels/" + channelId;
+    }
+
+    public void sendChatMessage(ChatMessageDto message) {
+        log.debug("Broadcast message " + message.getId() + " to chat " + message.getChat().getId());
+        messagingTemplate.convertAndSend(getChatTopic(message.getChat().getId()), message);
+        streamService.publish(StreamService.getChatKey(message.getChat().getId()), message.getId(), message);
+    }
+
+    public void sendChannelMessage(long channelId, ChannelMessageDto message) {
+        log.debug("Broadcast message " + message.getId() + " to channel " + channelId);
+        messagingTemplate.convertAndSend(getChannelTopic(channelId), message);
+        streamService.publish(StreamService.getChannelKey(channelId), message.getId(), message);
+    }
+
+    public void sendTyping(TypingDto typing) {
+        if (typing.getChannelId() == null) {
+            messagingTemplate.convertAndSend(getChatTopic(typing.getChatId()) + "/typing", typing);
+            streamService.signal(StreamService.getChatKey(typing.getChatId()), "typing", typing);
+        } else {
+            messagingTemplate.convertAndSend(getChannelTopic(typing.getChannelId()) + "/typing", typing);
+            streamService.signal(StreamService.getChannelKey(typing.getChannelId()), "typing", typing);
+        }
+    }
+
+    @EventListener
+    public void onRemoteMessage(MessageSavedEvent event) {
+        remoteDelivery.execute(() -> deliver(event));
+    }
+
+    @PreDestroy
+    public void stop() {
+        remoteDelivery.shutdownNow();
+    }
+
+    private void deliver(MessageSavedEvent event) {
+        Message message;
+        try {
+            message = messageService.getMessageWithContext(event.messageId());
+        } catch (MessageException e) {
+            log.debug("Message " + event.messageId() + " was deleted before delivery");
+            return;
+        }
+        try {
+            if (event.type() == MessageSavedEvent.Type.CHAT) {
+                sendChatMessage(Mapper.convertToChatMessageDto(message));
+            } else {
+                sendChannelMessage(event.conversationId(), Mapper.convertToChannelMessageDto(message));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to deliver remote message " + event.messageId() + ": " + e.getMessage());
+        }
+    }
+}
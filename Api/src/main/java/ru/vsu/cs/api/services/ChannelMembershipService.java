@@ -0,0 +1,124 @@
+package ru.vsu.cs.api.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
+import ru.vsu.cs.api.repositories.MemberRepository;
+import ru.vsu.cs.api.repositories.projections.ChannelMember;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@Slf4j
+public class ChannelMembershipService {
+    private final MemberRepository memberRepository;
+    private final Cache<Long, Map<Long, ChannelMember>> channels;
+
+    @Autowired
+    public ChannelMembershipService(MemberRepository memberRepository, MeterRegistry meterRegistry,
+                                    @Value("${cache.members.max-size:10000}") long maxSize,
+                                    @Value("${cache.members.ttl:300}") long ttl) {
+        this.memberRepository = memberRepository;
+        this.channels = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttl))
+                .recordStats()
+                .<Long, Map<Long, ChannelMember>>build(), "channels.members");
+    }
+
+    public Optional<ChannelMember> get(long channelId, long userId) {
+        return Optional.ofNullable(getIndex(channelId).get(userId));
+    }
+
+    public List<ChannelMember> getMembers(long channelId) {
+        return List.copyOf(getIndex(channelId).values());
+    }
+
+    public void put(long channelId, ChannelMember member) {
+        afterCommit(() -> channels.asMap().computeIfPresent(channelId, (id, members) -> {
+            Map<Long, ChannelMember> updated = new LinkedHashMap<>(members);
+            updated.put(member.userId(), member);
+            return Collections.unmodifiableMap(updated);
+        }));
+    }
+
+    public void remove(long channelId, long userId) {
+        afterCommit(() -> channels.asMap().computeIfPresent(channelId, (id, members) -> {
+            Map<Long, ChannelMember> updated = new LinkedHashMap<>(members);
+            updated.remove(userId);
+            return Collections.unmodifiableMap(updated);
+        }));
+    }
+
+    public void evict(long channelId) {
+        channels.invalidate(channelId);
+        afterCommit(() -> channels.invalidate(channelId));
+    }
+
+    public void evictUser(long userId) {
+        removeUser(userId);
+        afterCommit(() -> removeUser(userId));
+    }
+
+    public void evictRole(long roleId) {
+        removeRole(roleId);
+        afterCommit(() -> removeRole(roleId));
+    }
+
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        switch (event.type()) {
+            case ALL -> channels.invalidateAll();
+            case CHANNEL -> channels.invalidate(event.id());
+            case USER -> removeUser(event.id());
+            case ROLE -> removeRole(event.id());
+        }
+    }
+
+    private void removeUser(long userId) {
+        channels.asMap().values().removeIf(members -> members.containsKey(userId));
+    }
+
+    private void removeRole(long roleId) {
+        channels.asMap().values().removeIf(members -> members.values().stream()
+                .anyMatch(member -> member.roleId() != null && member.roleId() == roleId));
+    }
+
+    private Map<Long, ChannelMember> getIndex(long channelId) {
+        return channels.get(channelId, this::load);
+    }
+
+    private Map<Long, ChannelMember> load(long channelId) {
+        Map<Long, ChannelMember> members = new LinkedHashMap<>();
+        memberRepository.findChannelMembers(channelId).forEach(member -> members.put(member.userId(), member));
+        log.debug("Loaded " + members.size() + " members of channel " + channelId);
+        return Collections.unmodifiableMap(members);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
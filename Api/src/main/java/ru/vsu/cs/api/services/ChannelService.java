@@ -4,12 +4,19 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
 import ru.vsu.cs.api.models.Channel;
+import ru.vsu.cs.api.models.Member;
+import ru.vsu.cs.api.models.Role;
 import ru.vsu.cs.api.repositories.ChannelRepository;
+import ru.vsu.cs.api.repositories.MemberRepository;
+import ru.vsu.cs.api.repositories.RoleRepository;
+import ru.vsu.cs.api.repositories.projections.ChannelSummary;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+import ru.vsu.cs.api.utils.EntityTag;
 import ru.vsu.cs.api.utils.exceptions.ChannelException;
 import ru.vsu.cs.api.utils.exceptions.UserException;
 
-import java.math.BigInteger;
 import java.util.List;
 
 @Service
@@ -17,32 +24,57 @@ import java.util.List;
 @Slf4j
 public class ChannelService {
     private final ChannelRepository channelRepository;
+    private final RoleRepository roleRepository;
+    private final MemberRepository memberRepository;
+    private final ChannelMembershipService channelMembershipService;
+    private final NotificationService notificationService;
 
     @Autowired
-    public ChannelService(ChannelRepository channelRepository) {
+    public ChannelService(ChannelRepository channelRepository, RoleRepository roleRepository,
+                          MemberRepository memberRepository, ChannelMembershipService channelMembershipService,
+                          NotificationService notificationService) {
         this.channelRepository = channelRepository;
+        this.roleRepository = roleRepository;
+        this.memberRepository = memberRepository;
+        this.channelMembershipService = channelMembershipService;
+        this.notificationService = notificationService;
     }
 
-    public List<Channel> getAll() {
-        return channelRepository.findAll();
+    public List<ChannelSummary> getSummaries() {
+        return channelRepository.findSummaries();
+    }
+
+    public String getChannelsTag() {
+        return EntityTag.of(channelRepository.findChannelsState());
+    }
+
+    public String getChannelTag(Channel channel, List<Member> members, List<MessageView> messages,
+                                String before, String after, int limit) {
+        return EntityTag.of(channel.getId(), channel.getVersion(), channel.getCreator().getVersion(),
+                members.stream().map(ChannelService::getMemberState).toList(), messages, before, after, limit);
     }
 
     @Transactional
-    public Channel create(Channel channel) {
+    public Channel create(Channel channel, Role creatorRole) {
         if (channelRepository.findByName(channel.getName()).isPresent()) {
             log.warn("Exist channel with name: " + channel.getName());
             throw new ChannelException("Канал с таким именем уже существует: " + channel.getName());
         }
+        channelRepository.save(channel);
+        roleRepository.save(creatorRole);
+        memberRepository.save(new Member(channel, channel.getCreator(), creatorRole));
         log.info("Channel (" + channel.getName() + ") create successfully");
-        return channelRepository.saveAndFlush(channel);
+        return channel;
     }
 
     @Transactional
-    public void delete(BigInteger id) {
+    public void delete(long id) {
         channelRepository.deleteById(id);
+        channelMembershipService.evict(id);
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.CHANNEL, id);
     }
 
-    public Channel getChannelById(BigInteger id) {
+    public Channel getChannelById(long id) {
         Channel channel = channelRepository.findById(id).orElse(null);
         if (channel == null) {
             log.warn("Not found channel with id: " + id);
@@ -61,11 +93,11 @@ public class ChannelService {
     }
 
     @Transactional
-    public void updateName(BigInteger id, String name) {
+    public void updateName(long id, String name) {
         Channel foundChannel = channelRepository.findByName(name).orElse(null);
         Channel channel = getChannelById(id);
 
-        if (foundChannel != null && !foundChannel.getId().equals(id)) {
+        if (foundChannel != null && foundChannel.getId() != id) {
             log.warn("Exist channel with name: " + name);
             throw new UserException("Канал с таким именем уже существует: " + name);
         }
@@ -76,4 +108,9 @@ public class ChannelService {
         channelRepository.save(channel);
     }
 
+    private static String getMemberState(Member member) {
+        Role role = member.getRole();
+        return member.getId() + "." + member.getUser().getId() + "." + member.getUser().getVersion() + "."
+                + role.getName() + "." + role.getIsAdmin() + "." + role.getIsCreator();
+    }
 }
@@ -1,41 +1,68 @@
 package ru.vsu.cs.api.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
 import ru.vsu.cs.api.models.Chat;
 import ru.vsu.cs.api.models.User;
 import ru.vsu.cs.api.repositories.ChatRepository;
+import ru.vsu.cs.api.repositories.projections.ChatMembers;
 import ru.vsu.cs.api.utils.exceptions.ChatException;
 
-import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
 @Transactional(readOnly = true)
 @Slf4j
 public class ChatService {
     private final ChatRepository chatRepository;
+    private final NotificationService notificationService;
+    private final Cache<Long, ChatMembers> members;
 
     @Autowired
-    public ChatService(ChatRepository chatRepository) {
+    public ChatService(ChatRepository chatRepository, NotificationService notificationService,
+                       MeterRegistry meterRegistry,
+                       @Value("${cache.chats.max-size:10000}") long maxSize,
+                       @Value("${cache.chats.ttl:300}") long ttl) {
         this.chatRepository = chatRepository;
+        this.notificationService = notificationService;
+        this.members = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttl))
+                .recordStats()
+                .<Long, ChatMembers>build(), "chats.members");
     }
 
     @Transactional
     public Chat create(Chat chat) {
-        Chat foundChat = chatRepository.findByUsernames(chat.getUserFirst().getId(), chat.getUserSecond().getId())
-                .orElse(null);
+        long firstId = chat.getUserFirst().getId();
+        long secondId = chat.getUserSecond().getId();
+        Chat foundChat = findByPair(firstId, secondId).orElse(null);
         if (foundChat != null) {
             return foundChat;
         }
-        log.info("Chat (" + chat.getUserFirst().getName() + "<-->" + chat.getUserSecond().getName() + ") create successfully");
-        return chatRepository.saveAndFlush(chat);
+        if (chatRepository.insertIfAbsent(firstId, secondId) > 0) {
+            log.info("Chat (" + chat.getUserFirst().getName() + "<-->" + chat.getUserSecond().getName() + ") create successfully");
+        }
+        return findByPair(firstId, secondId).orElseThrow();
     }
 
     public Chat getByUsernames(User currentUser, User otherUser) {
-        Chat chat = chatRepository.findByUsernames(currentUser.getId(), otherUser.getId()).orElse(null);
+        Chat chat = findByPair(currentUser.getId(), otherUser.getId()).orElse(null);
         if (chat == null) {
             log.warn("Not found chat for users: " + currentUser.getName() + " and " + otherUser.getName());
             throw new ChatException("Не найден чат между такими пользователями: " + currentUser.getName() + " и " + otherUser.getName());
@@ -43,7 +70,7 @@ public class ChatService {
         return chat;
     }
 
-    public Chat getById(BigInteger id) {
+    public Chat getById(long id) {
         Chat chat = chatRepository.findById(id).orElse(null);
         if (chat == null) {
             log.warn("Not found chat with id: " + id);
@@ -52,13 +79,61 @@ public class ChatService {
         return chat;
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ChatMembers getMembers(long id) {
+        ChatMembers chatMembers = members.getIfPresent(id);
+        if (chatMembers == null) {
+            chatMembers = chatRepository.findMembersById(id).orElse(null);
+            if (chatMembers == null) {
+                log.warn("Not found chat with id: " + id);
+                throw new ChatException("Не существует чата с таким id: " + id);
+            }
+            members.put(id, chatMembers);
+        }
+        return chatMembers;
+    }
+
     public List<Chat> getChatsByUser(User user) {
         return chatRepository.findByUserFirstOrUserSecond(user, user);
     }
 
+    public Map<Long, List<Chat>> getChatsByUsers(List<User> users) {
+        Map<Long, List<Chat>> chats = new HashMap<>();
+        for (Chat chat : chatRepository.findByUsers(users)) {
+            chats.computeIfAbsent(chat.getUserFirst().getId(), id -> new ArrayList<>()).add(chat);
+            if (!chat.getUserFirst().getId().equals(chat.getUserSecond().getId())) {
+                chats.computeIfAbsent(chat.getUserSecond().getId(), id -> new ArrayList<>()).add(chat);
+            }
+        }
+        return chats;
+    }
+
     @Transactional
-    public void delete(BigInteger id) {
+    public void delete(long id) {
         chatRepository.deleteById(id);
+        members.invalidate(id);
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.CHAT, id);
+    }
+
+    public void evictUser(long userId) {
+        removeUser(userId);
+    }
+
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        switch (event.type()) {
+            case ALL -> members.invalidateAll();
+            case CHAT -> members.invalidate(event.id());
+            case USER -> removeUser(event.id());
+        }
+    }
+
+    private void removeUser(long userId) {
+        members.asMap().values().removeIf(chatMembers -> chatMembers.contains(userId));
+    }
+
+    private Optional<Chat> findByPair(long firstId, long secondId) {
+        return chatRepository.findByPair(Math.min(firstId, secondId), Math.max(firstId, secondId));
     }
 
 }
@@ -0,0 +1,72 @@
+package ru.vsu.cs.api.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.vsu.cs.api.repositories.projections.ConversationHead;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+public class InboxService {
+    private static final String SELECT_HEADS = """
+            select c.id as chat_id, null as channel_id, peer.id as peer_id, peer.name as name,
+                   peer.avatar_hash as peer_avatar_hash, c.message_count, coalesce(p.read_count, 0) as read_count,
+                   m.id as message_id, m.data, m.date, s.id as sender_id, s.name as sender_name,
+                   s.avatar_hash as sender_avatar_hash
+            from chats c
+                     join users peer on peer.id = case when c.first_user = ? then c.second_user else c.first_user end
+                     left join messages m on m.id = c.last_message_id
+                     left join users s on s.id = m.sender
+                     left join read_pointers p on p.chat_id = c.id and p.user_id = ?
+            where c.first_user = ? or c.second_user = ?
+            union all
+            select null, ch.id, null, ch.name, null, ch.message_count, coalesce(p.read_count, 0),
+                   m.id, m.data, m.date, s.id, s.name, s.avatar_hash
+            from members mb
+                     join channels ch on ch.id = mb.channel_id
+                     left join messages m on m.id = ch.last_message_id
+                     left join users s on s.id = m.sender
+                     left join read_pointers p on p.channel_id = ch.id and p.user_id = ?
+            where mb.user_id = ?
+            order by date desc nulls last, chat_id, channel_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UnreadService unreadService;
+
+    @Autowired
+    public InboxService(JdbcTemplate jdbcTemplate, UnreadService unreadService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.unreadService = unreadService;
+    }
+
+    public List<ConversationHead> getInbox(long userId) {
+        List<ConversationHead> heads = jdbcTemplate.query(SELECT_HEADS, (rs, rowNum) -> {
+            Long messageId = rs.getObject("message_id", Long.class);
+            MessageView lastMessage = messageId == null ? null : new MessageView(
+                    messageId,
+                    rs.getString("data"),
+                    rs.getObject("date", LocalDateTime.class),
+                    rs.getObject("sender_id", Long.class),
+                    rs.getString("sender_name"),
+                    rs.getString("sender_avatar_hash")
+            );
+            return new ConversationHead(
+                    rs.getObject("chat_id", Long.class),
+                    rs.getObject("channel_id", Long.class),
+                    rs.getObject("peer_id", Long.class),
+                    rs.getString("name"),
+                    rs.getString("peer_avatar_hash"),
+                    rs.getLong("message_count"),
+                    rs.getLong("read_count"),
+                    lastMessage
+            );
+        }, userId, userId, userId, userId, userId, userId);
+
+        return heads.stream().map(head -> head.withReadCount(
+                unreadService.getReadCount(userId, head.chatId(), head.channelId(), head.readCount()))).toList();
+    }
+}
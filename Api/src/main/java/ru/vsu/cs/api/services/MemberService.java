@@ -4,62 +4,96 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
 import ru.vsu.cs.api.models.Channel;
 import ru.vsu.cs.api.models.Member;
 import ru.vsu.cs.api.models.Role;
 import ru.vsu.cs.api.models.User;
 import ru.vsu.cs.api.repositories.MemberRepository;
+import ru.vsu.cs.api.repositories.projections.ChannelMember;
 import ru.vsu.cs.api.utils.exceptions.MemberException;
+import ru.vsu.cs.api.utils.mapper.Mapper;
 
-import java.math.BigInteger;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 @Slf4j
 public class MemberService {
     private final MemberRepository memberRepository;
+    private final ChannelMembershipService channelMembershipService;
+    private final UserService userService;
+    private final NotificationService notificationService;
+    private final UnreadService unreadService;
 
     @Autowired
-    public MemberService(MemberRepository memberRepository) {
+    public MemberService(MemberRepository memberRepository, ChannelMembershipService channelMembershipService,
+                         UserService userService, NotificationService notificationService,
+                         UnreadService unreadService) {
         this.memberRepository = memberRepository;
+        this.channelMembershipService = channelMembershipService;
+        this.userService = userService;
+        this.notificationService = notificationService;
+        this.unreadService = unreadService;
     }
 
     public List<Member> getMembersByUser(User user) {
         return memberRepository.findByUser(user);
     }
 
+    public Map<Long, List<Member>> getMembersByUsers(List<User> users) {
+        return memberRepository.findByUsers(users).stream()
+                .collect(Collectors.groupingBy(member -> member.getUser().getId()));
+    }
+
     public List<Member> getMembersByChannel(Channel channel) {
-        return memberRepository.findByChannel(channel);
+        List<ChannelMember> channelMembers = channelMembershipService.getMembers(channel.getId());
+        Map<Long, User> users = userService.getUsersByIds(channelMembers.stream().map(ChannelMember::userId).toList());
+        return channelMembers.stream()
+                .filter(channelMember -> users.containsKey(channelMember.userId()))
+                .map(channelMember -> Mapper.convertToMember(channelMember, channel, users.get(channelMember.userId())))
+                .toList();
+    }
+
+    public List<Long> getUserIdsByChannel(long channelId) {
+        return channelMembershipService.getMembers(channelId).stream().map(ChannelMember::userId).toList();
     }
 
     public Member getMemberByUserAndChannel(User user, Channel channel) {
-        Member member = memberRepository.findByUserAndChannel(user, channel).orElse(null);
-        if (member == null) {
+        ChannelMember channelMember = channelMembershipService.get(channel.getId(), user.getId()).orElse(null);
+        if (channelMember == null) {
             log.warn("Not found member with name (" + user.getName() + ") for channel with name ( "
                     + channel.getName() + ")");
             throw new MemberException("Не существует участника (" + user.getName() + ") в канале ( "
                     + channel.getName() + ")");
         }
 
-        return member;
+        return Mapper.convertToMember(channelMember, channel, user);
     }
 
     @Transactional
     public void save(Member member) {
         log.info(member.getUser().getName() + " join to " + member.getChannel().getName());
         memberRepository.save(member);
+        unreadService.markChannelJoined(member.getUser().getId(), member.getChannel().getId());
+        channelMembershipService.put(member.getChannel().getId(), Mapper.convertToChannelMember(member));
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.CHANNEL, member.getChannel().getId());
     }
 
     @Transactional
-    public void delete(BigInteger id) {
-        memberRepository.deleteById(id);
+    public void delete(Member member) {
+        memberRepository.deleteById(member.getId());
+        channelMembershipService.remove(member.getChannel().getId(), member.getUser().getId());
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.CHANNEL, member.getChannel().getId());
     }
 
     @Transactional
     public void updateRole(Member member, Role role) {
         member.setRole(role);
-        memberRepository.save(member);
-
+        memberRepository.incrementVersion(member.getId());
+        channelMembershipService.put(member.getChannel().getId(), Mapper.convertToChannelMember(member));
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.CHANNEL, member.getChannel().getId());
     }
 }
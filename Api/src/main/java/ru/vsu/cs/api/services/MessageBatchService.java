@@ -0,0 +1,181 @@
+package ru.vsu.cs.api.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.vsu.cs.api.events.MessageSavedEvent;
+import ru.vsu.cs.api.models.Message;
+import ru.vsu.cs.api.repositories.MessageRepository;
+import ru.vsu.cs.api.utils.exceptions.MessageException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+@Slf4j
+public class MessageBatchService {
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final UnreadService unreadService;
+    private final NotificationService notificationService;
+    private final BlockingQueue<PendingMessage> queue = new LinkedBlockingQueue<>();
+
+    @Value("${messages.group-commit.enabled:false}")
+    private boolean enabled;
+    @Value("${messages.group-commit.max-delay:5}")
+    private long maxDelay;
+    @Value("${messages.group-commit.max-batch-size:100}")
+    private int maxBatchSize;
+    @Value("${messages.group-commit.timeout:10000}")
+    private long timeout;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    @Autowired
+    public MessageBatchService(MessageRepository messageRepository, TransactionTemplate transactionTemplate,
+                               UnreadService unreadService, NotificationService notificationService) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.unreadService = unreadService;
+        this.notificationService = notificationService;
+    }
+
+    public Message save(Message message) {
+        PendingMessage pending = new PendingMessage(message, new CompletableFuture<>());
+        if (enabled) {
+            if (!running) {
+                throw new MessageException("Сохранение сообщений остановлено");
+            }
+            queue.add(pending);
+            if (!running && queue.remove(pending)) {
+                throw new MessageException("Сохранение сообщений остановлено");
+            }
+        } else {
+            flush(List.of(pending));
+        }
+        try {
+            return pending.result().get(timeout, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new MessageException("Не удалось сохранить сообщение");
+        } catch (TimeoutException e) {
+            log.warn("Message was not saved within " + timeout + " ms");
+            throw new MessageException("Не удалось сохранить сообщение");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessageException("Не удалось сохранить сообщение");
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "message-group-commit");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Group commit for messages enabled (max delay " + maxDelay + " ms, max batch " + maxBatchSize + ")");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void run() {
+        List<PendingMessage> batch = List.of();
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    batch = collect();
+                    flush(batch);
+                } catch (InterruptedException e) {
+                    if (running) {
+                        log.warn("Group commit worker interrupted");
+                    }
+                    batch = new ArrayList<>();
+                    queue.drainTo(batch);
+                    if (!batch.isEmpty()) {
+                        flush(batch);
+                    }
+                    return;
+                }
+            }
+        } catch (Throwable e) {
+            log.error("Group commit worker failed", e);
+        } finally {
+            running = false;
+            List<PendingMessage> rest = new ArrayList<>(batch);
+            queue.drainTo(rest);
+            rest.forEach(pending -> pending.result().completeExceptionally(
+                    new MessageException("Сохранение сообщений остановлено")));
+        }
+    }
+
+    private List<PendingMessage> collect() throws InterruptedException {
+        List<PendingMessage> batch = new ArrayList<>();
+        batch.add(queue.take());
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        while (batch.size() < maxBatchSize) {
+            PendingMessage next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        try {
+            List<Message> saved = transactionTemplate.execute(status -> insert(batch));
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(saved.get(i));
+            }
+            log.debug("Group commit of " + batch.size() + " messages");
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> {
+                pending.message().setId(null);
+                pending.message().setVersion(null);
+            });
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+            log.warn("Group commit of " + batch.size() + " messages failed, retrying one by one: " + e.getMessage());
+            batch.forEach(pending -> flush(List.of(pending)));
+        }
+    }
+
+    private List<Message> insert(List<PendingMessage> batch) {
+        List<Message> messages = messageRepository.saveAll(batch.stream().map(PendingMessage::message).toList());
+        messageRepository.flush();
+        unreadService.recordMessages(messages);
+        notificationService.publishMessagesSaved(messages.stream().map(MessageSavedEvent::of).toList());
+        return messages;
+    }
+
+    private record PendingMessage(Message message, CompletableFuture<Message> result) {
+    }
+}
@@ -2,43 +2,77 @@ package ru.vsu.cs.api.services;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.vsu.cs.api.models.Channel;
 import ru.vsu.cs.api.models.Chat;
 import ru.vsu.cs.api.models.Message;
 import ru.vsu.cs.api.repositories.MessageRepository;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+import ru.vsu.cs.api.utils.MessageCursor;
+import ru.vsu.cs.api.utils.exceptions.CursorException;
 import ru.vsu.cs.api.utils.exceptions.MessageException;
 
-import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Service
 @Transactional(readOnly = true)
 @Slf4j
 public class MessageService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final MessageRepository messageRepository;
+    private final MessageBatchService messageBatchService;
 
     @Autowired
-    public MessageService(MessageRepository messageRepository) {
+    public MessageService(MessageRepository messageRepository, MessageBatchService messageBatchService) {
         this.messageRepository = messageRepository;
+        this.messageBatchService = messageBatchService;
     }
 
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Message save(Message message) {
         log.info(message.getSender().getName() + " sent message");
-        return messageRepository.saveAndFlush(message);
+        return messageBatchService.save(message);
+    }
+
+    public List<MessageView> getMessagesByChat(Chat chat, MessageCursor before, MessageCursor after, int limit) {
+        Pageable page = getPage(before, after, limit);
+        if (after != null) {
+            return messageRepository.findByChatAfter(chat, after.getDate(), after.getId(), page);
+        }
+        List<MessageView> messages = before == null
+                ? messageRepository.findLatestByChat(chat, page)
+                : messageRepository.findByChatBefore(chat, before.getDate(), before.getId(), page);
+        return reverse(messages);
+    }
+
+    public List<MessageView> getMessagesByChannel(Channel channel, MessageCursor before, MessageCursor after, int limit) {
+        Pageable page = getPage(before, after, limit);
+        if (after != null) {
+            return messageRepository.findByChannelAfter(channel, after.getDate(), after.getId(), page);
+        }
+        List<MessageView> messages = before == null
+                ? messageRepository.findLatestByChannel(channel, page)
+                : messageRepository.findByChannelBefore(channel, before.getDate(), before.getId(), page);
+        return reverse(messages);
     }
 
-    public List<Message> getMessagesByChat(Chat chat) {
-        return messageRepository.findByChat(chat);
+    public List<MessageView> getMessagesByChatAfterId(Chat chat, long id, int limit) {
+        return messageRepository.findByChatAfterId(chat, id, getPage(null, null, limit));
     }
 
-    public List<Message> getMessagesByChannel(Channel channel) {
-        return messageRepository.findByChannel(channel);
+    public List<MessageView> getMessagesByChannelAfterId(Channel channel, long id, int limit) {
+        return messageRepository.findByChannelAfterId(channel, id, getPage(null, null, limit));
     }
 
-    public Message getMessage(BigInteger id) {
+    public Message getMessage(long id) {
         Message message = messageRepository.findById(id).orElse(null);
         if (message == null) {
             log.warn("Not found message with id: " + id);
@@ -46,4 +80,31 @@ public class MessageService {
         }
         return message;
     }
+
+    public Message getMessageWithContext(long id) {
+        Message message = messageRepository.findWithContextById(id).orElse(null);
+        if (message == null) {
+            log.warn("Not found message with id: " + id);
+            throw new MessageException("Не найденно сообщения с данным id: " + id);
+        }
+        return message;
+    }
+
+    private Pageable getPage(MessageCursor before, MessageCursor after, int limit) {
+        if (before != null && after != null) {
+            log.warn("Both cursors (before, after) are specified");
+            throw new CursorException("Нельзя одновременно указывать курсоры before и after");
+        }
+        if (limit < 1) {
+            log.warn("Incorrect page size: " + limit);
+            throw new CursorException("Некорректный размер страницы: " + limit);
+        }
+        return PageRequest.of(0, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private List<MessageView> reverse(List<MessageView> messages) {
+        List<MessageView> result = new ArrayList<>(messages);
+        Collections.reverse(result);
+        return result;
+    }
 }
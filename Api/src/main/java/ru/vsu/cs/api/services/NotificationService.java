@@ -0,0 +1,144 @@
+package ru.vsu.cs.api.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
+import ru.vsu.cs.api.events.MessageSavedEvent;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@Slf4j
+public class NotificationService {
+    private static final String INVALIDATION_CHANNEL = "cache_invalidation";
+    private static final String MESSAGES_CHANNEL = "message_saved";
+    private static final String SEPARATOR = "/";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DataSourceProperties dataSourceProperties;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Value("${notifications.enabled:true}")
+    private boolean enabled;
+    @Value("${notifications.poll-timeout:1000}")
+    private int pollTimeout;
+    @Value("${notifications.reconnect-delay:5000}")
+    private long reconnectDelay;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    @Autowired
+    public NotificationService(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                               DataSourceProperties dataSourceProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.dataSourceProperties = dataSourceProperties;
+    }
+
+    public void publishInvalidation(CacheInvalidationEvent.Type type, long id) {
+        publish(INVALIDATION_CHANNEL, List.of(new CacheInvalidationEvent(type, id).toPayload()));
+    }
+
+    public void publishMessagesSaved(Collection<MessageSavedEvent> events) {
+        publish(MESSAGES_CHANNEL, events.stream().map(MessageSavedEvent::toPayload).toList());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "notification-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + INVALIDATION_CHANNEL);
+                    statement.execute("LISTEN " + MESSAGES_CHANNEL);
+                }
+                log.info("Listening for notifications as node " + nodeId);
+                eventPublisher.publishEvent(new CacheInvalidationEvent(CacheInvalidationEvent.Type.ALL, 0));
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeout);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getName(), notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Notification listener disconnected: " + e.getMessage());
+                    pause();
+                }
+            }
+        }
+    }
+
+    private void publish(String channel, List<String> payloads) {
+        if (enabled && !payloads.isEmpty()) {
+            jdbcTemplate.queryForList("select pg_notify(?, payload) from unnest(?::text[]) as payload", channel,
+                    payloads.stream().map(payload -> nodeId + SEPARATOR + payload).toArray(String[]::new));
+        }
+    }
+
+    private void handle(String channel, String payload) {
+        try {
+            int index = payload.indexOf(SEPARATOR);
+            if (nodeId.equals(payload.substring(0, index))) {
+                return;
+            }
+            if (INVALIDATION_CHANNEL.equals(channel)) {
+                eventPublisher.publishEvent(CacheInvalidationEvent.parse(payload.substring(index + 1)));
+            } else if (MESSAGES_CHANNEL.equals(channel)) {
+                eventPublisher.publishEvent(MessageSavedEvent.parse(payload.substring(index + 1)));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to handle notification " + channel + " " + payload + ": " + e.getMessage());
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(reconnectDelay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package ru.vsu.cs.api.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Slf4j
+public class PresenceService {
+    private final Shard[] shards;
+    private final long timeout;
+    private final long retention;
+
+    @Autowired
+    public PresenceService(MeterRegistry meterRegistry,
+                           @Value("${presence.shards:64}") int shards,
+                           @Value("${presence.timeout:30000}") long timeout,
+                           @Value("${presence.retention:86400000}") long retention) {
+        this.shards = new Shard[Integer.highestOneBit(Math.max(1, shards - 1)) << 1];
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.timeout = timeout;
+        this.retention = retention;
+        Gauge.builder("presence.online", this, PresenceService::countOnline).register(meterRegistry);
+    }
+
+    public void heartbeat(long userId) {
+        long now = System.currentTimeMillis();
+        Shard shard = shard(userId);
+        shard.lock.lock();
+        try {
+            Entry entry = shard.entries.get(userId);
+            if (entry == null) {
+                shard.entries.put(userId, new Entry(now));
+            } else {
+                entry.lastSeen = now;
+                entry.disconnected = false;
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public void disconnect(long userId) {
+        long now = System.currentTimeMillis();
+        Shard shard = shard(userId);
+        shard.lock.lock();
+        try {
+            Entry entry = shard.entries.computeIfAbsent(userId, id -> new Entry(now));
+            entry.lastSeen = now;
+            entry.disconnected = true;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public Presence get(long userId) {
+        long now = System.currentTimeMillis();
+        Shard shard = shard(userId);
+        shard.lock.lock();
+        try {
+            return toPresence(shard.entries.get(userId), now);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public Map<Long, Presence> get(Collection<Long> userIds) {
+        List<List<Long>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(null);
+        }
+        for (Long userId : userIds) {
+            int index = index(userId);
+            if (byShard.get(index) == null) {
+                byShard.set(index, new ArrayList<>());
+            }
+            byShard.get(index).add(userId);
+        }
+
+        long now = System.currentTimeMillis();
+        Map<Long, Presence> presence = new HashMap<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<Long> ids = byShard.get(i);
+            if (ids == null) {
+                continue;
+            }
+            Shard shard = shards[i];
+            shard.lock.lock();
+            try {
+                ids.forEach(id -> presence.put(id, toPresence(shard.entries.get(id), now)));
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return presence;
+    }
+
+    @Scheduled(fixedDelayString = "${presence.sweep-interval:60000}")
+    public void sweep() {
+        long expired = System.currentTimeMillis() - retention;
+        int removed = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                int size = shard.entries.size();
+                shard.entries.values().removeIf(entry -> entry.lastSeen < expired);
+                removed += size - shard.entries.size();
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        if (removed > 0) {
+            log.debug("Removed " + removed + " expired presence entries");
+        }
+    }
+
+    private int countOnline() {
+        long now = System.currentTimeMillis();
+        int online = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (Entry entry : shard.entries.values()) {
+                    if (isOnline(entry, now)) {
+                        online++;
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return online;
+    }
+
+    private Presence toPresence(Entry entry, long now) {
+        if (entry == null) {
+            return Presence.UNKNOWN;
+        }
+        return new Presence(isOnline(entry, now),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.lastSeen), ZoneId.systemDefault()));
+    }
+
+    private boolean isOnline(Entry entry, long now) {
+        return !entry.disconnected && now - entry.lastSeen < timeout;
+    }
+
+    private Shard shard(long userId) {
+        return shards[index(userId)];
+    }
+
+    private int index(long userId) {
+        return Long.hashCode(userId * 0x9E3779B97F4A7C15L) & (shards.length - 1);
+    }
+
+    public record Presence(boolean online, LocalDateTime lastSeen) {
+        private static final Presence UNKNOWN = new Presence(false, null);
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, Entry> entries = new HashMap<>();
+    }
+
+    private static final class Entry {
+        private long lastSeen;
+        private boolean disconnected;
+
+        private Entry(long lastSeen) {
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ru.vsu.cs.api.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.vsu.cs.api.utils.exceptions.RateLimitException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class RateLimitService {
+    private final Cache<String, AtomicLong> buckets;
+    private final Counter rejections;
+    private final long interval;
+    private final long capacity;
+
+    @Autowired
+    public RateLimitService(MeterRegistry meterRegistry,
+                            @Value("${rate-limit.messages.burst:20}") long burst,
+                            @Value("${rate-limit.messages.refill-per-second:5}") double refillPerSecond,
+                            @Value("${rate-limit.messages.max-users:100000}") long maxUsers) {
+        this.interval = (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond);
+        this.capacity = interval * burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Duration.ofNanos(capacity))
+                .build();
+        this.rejections = Counter.builder("messages.rate_limit.rejections")
+                .description("Message sends rejected by the per-user rate limiter")
+                .register(meterRegistry);
+    }
+
+    public void acquire(String username) {
+        // The bucket is stored as the time at which it would be empty again: each token moves it forward
+        // by one refill interval, and a request fits while that time is no further than burst intervals ahead.
+        AtomicLong bucket = buckets.get(username, key -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = System.nanoTime();
+            long current = bucket.get();
+            long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + interval;
+            long wait = next - now - capacity;
+            if (wait > 0) {
+                rejections.increment();
+                log.debug("Rate limit exceeded for user: " + username);
+                throw new RateLimitException("Слишком много сообщений, повторите попытку позже",
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1)));
+            }
+            if (bucket.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+}
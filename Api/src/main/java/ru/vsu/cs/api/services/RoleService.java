@@ -4,20 +4,24 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
 import ru.vsu.cs.api.models.Role;
 import ru.vsu.cs.api.repositories.RoleRepository;
 
-import java.math.BigInteger;
-
 @Service
 @Transactional(readOnly = true)
 @Slf4j
 public class RoleService {
     private final RoleRepository roleRepository;
+    private final ChannelMembershipService channelMembershipService;
+    private final NotificationService notificationService;
 
     @Autowired
-    public RoleService(RoleRepository roleRepository) {
+    public RoleService(RoleRepository roleRepository, ChannelMembershipService channelMembershipService,
+                       NotificationService notificationService) {
         this.roleRepository = roleRepository;
+        this.channelMembershipService = channelMembershipService;
+        this.notificationService = notificationService;
     }
 
     @Transactional
@@ -27,16 +31,20 @@ public class RoleService {
     }
 
     @Transactional
-    public Role update(BigInteger id, Role role) {
+    public Role update(long id, Role role) {
         role.setId(id);
         log.info("Updated role with id: " + id);
         roleRepository.save(role);
+        channelMembershipService.evictRole(id);
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.ROLE, id);
         return role;
     }
 
     @Transactional
-    public void delete(BigInteger id) {
+    public void delete(long id) {
         log.info("Deleted role with id: " + id);
         roleRepository.deleteById(id);
+        channelMembershipService.evictRole(id);
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.ROLE, id);
     }
 }
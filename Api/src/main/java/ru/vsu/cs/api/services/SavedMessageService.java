@@ -10,6 +10,8 @@ import ru.vsu.cs.api.models.User;
 import ru.vsu.cs.api.repositories.SavedMessageRepository;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
@@ -26,6 +28,11 @@ public class SavedMessageService {
         return savedMessageRepository.findByUser(user);
     }
 
+    public Map<Long, List<SavedMessage>> getSavedMessagesByUsers(List<User> users) {
+        return savedMessageRepository.findByUsers(users).stream()
+                .collect(Collectors.groupingBy(savedMessage -> savedMessage.getUser().getId()));
+    }
+
     @Transactional
     public void save(SavedMessage savedMessage) {
         log.info(savedMessage.getUser().getName() + " saved the message");
@@ -0,0 +1,242 @@
+package ru.vsu.cs.api.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.vsu.cs.api.models.Channel;
+import ru.vsu.cs.api.models.Chat;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+import ru.vsu.cs.api.utils.mapper.Mapper;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+@Service
+@Slf4j
+public class StreamService {
+    private static final int REPLAY_LIMIT = 200;
+
+    private final MessageService messageService;
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+    private final int queueSize;
+
+    @Value("${stream.timeout:1800000}")
+    private long timeout;
+
+    @Autowired
+    public StreamService(MessageService messageService,
+                         @Value("${stream.writer-threads:4}") int threads,
+                         @Value("${stream.queue-size:256}") int queueSize) {
+        this.messageService = messageService;
+        this.queueSize = Math.max(queueSize, REPLAY_LIMIT + 1);
+        AtomicInteger counter = new AtomicInteger();
+        this.writer = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "stream-writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static String getChatKey(long chatId) {
+        return "chat:" + chatId;
+    }
+
+    public static String getChannelKey(long channelId) {
+        return "channel:" + channelId;
+    }
+
+    public SseEmitter subscribeToChat(Chat chat, Long lastEventId) {
+        return subscribe(getChatKey(chat.getId()), lastEventId,
+                afterId -> messageService.getMessagesByChatAfterId(chat, afterId, REPLAY_LIMIT),
+                message -> Mapper.convertToChatMessageDto(message, chat));
+    }
+
+    public SseEmitter subscribeToChannel(Channel channel, Long lastEventId) {
+        return subscribe(getChannelKey(channel.getId()), lastEventId,
+                afterId -> messageService.getMessagesByChannelAfterId(channel, afterId, REPLAY_LIMIT),
+                message -> Mapper.convertToChannelMessageDto(message, channel));
+    }
+
+    public void publish(String key, long messageId, Object message) {
+        Set<Subscription> current = subscriptions.get(key);
+        if (current == null) {
+            return;
+        }
+        current.forEach(subscription -> subscription.publish(messageId, message));
+    }
+
+    public void signal(String key, String name, Object data) {
+        Set<Subscription> current = subscriptions.get(key);
+        if (current == null) {
+            return;
+        }
+        current.forEach(subscription -> subscription.signal(name, data));
+    }
+
+    @Scheduled(fixedDelayString = "${stream.heartbeat-interval:15000}")
+    public void sendHeartbeat() {
+        subscriptions.values().forEach(current -> current.forEach(Subscription::heartbeat));
+    }
+
+    @PreDestroy
+    public void stop() {
+        writer.shutdownNow();
+    }
+
+    private SseEmitter subscribe(String key, Long lastEventId,
+                                 Function<Long, List<MessageView>> replayLoader,
+                                 Function<MessageView, Object> mapper) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        Subscription subscription = new Subscription(key, emitter, lastEventId);
+
+        subscriptions.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscription);
+        Runnable remove = () -> unsubscribe(key, subscription);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        if (lastEventId != null) {
+            List<MessageView> missed = replayLoader.apply(lastEventId);
+            missed.forEach(message -> subscription.replay(message.id(), mapper.apply(message)));
+            if (missed.size() == REPLAY_LIMIT) {
+                log.info("Too many missed messages for " + key + " after " + lastEventId + ", client must resync");
+                subscription.reset();
+            }
+        }
+        subscription.goLive();
+
+        log.debug("New stream subscriber for " + key);
+        return emitter;
+    }
+
+    private void unsubscribe(String key, Subscription subscription) {
+        subscriptions.computeIfPresent(key, (k, current) -> {
+            current.remove(subscription);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    private class Subscription {
+        private final String key;
+        private final SseEmitter emitter;
+        private final Deque<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        private List<PendingEvent> pending = new ArrayList<>();
+        private Long lastId;
+        private boolean scheduled;
+        private boolean closed;
+
+        Subscription(String key, SseEmitter emitter, Long lastId) {
+            this.key = key;
+            this.emitter = emitter;
+            this.lastId = lastId;
+        }
+
+        synchronized void replay(long id, Object data) {
+            message(id, data);
+        }
+
+        synchronized void publish(long id, Object data) {
+            if (pending != null) {
+                pending.add(new PendingEvent(id, data));
+                return;
+            }
+            message(id, data);
+        }
+
+        synchronized void reset() {
+            enqueue(SseEmitter.event().name("reset").data(""));
+        }
+
+        synchronized void goLive() {
+            for (PendingEvent event : pending) {
+                if (lastId == null || event.id() > lastId) {
+                    message(event.id(), event.data());
+                }
+            }
+            pending = null;
+        }
+
+        synchronized void signal(String name, Object data) {
+            if (pending != null) {
+                return;
+            }
+            enqueue(SseEmitter.event().name(name).data(data));
+        }
+
+        synchronized void heartbeat() {
+            enqueue(SseEmitter.event().comment("heartbeat"));
+        }
+
+        private void message(long id, Object data) {
+            enqueue(SseEmitter.event().id(String.valueOf(id)).name("message").data(data));
+            lastId = id;
+        }
+
+        private void enqueue(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (queue.size() >= queueSize) {
+                log.warn("Stream subscriber for " + key + " fell " + queue.size() + " events behind, closing it");
+                closed = true;
+                queue.clear();
+                unsubscribe(key, this);
+            } else {
+                queue.add(event);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                writer.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                boolean close;
+                synchronized (this) {
+                    close = closed;
+                    event = close ? null : queue.poll();
+                    if (event == null) {
+                        scheduled = false;
+                    }
+                }
+                if (event == null) {
+                    if (close) {
+                        emitter.complete();
+                    }
+                    return;
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        closed = true;
+                        queue.clear();
+                        scheduled = false;
+                    }
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private record PendingEvent(long id, Object data) {
+    }
+}
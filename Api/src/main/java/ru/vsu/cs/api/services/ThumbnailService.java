@@ -0,0 +1,196 @@
+package ru.vsu.cs.api.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.vsu.cs.api.utils.ImageFormat;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class ThumbnailService {
+    public static final List<Integer> SIZES = List.of(32, 64, 256);
+    public static final int LIST_SIZE = 64;
+
+    private static final long MAX_PIXELS = 40_000_000L;
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final BlobStorageService blobStorageService;
+    private final ExecutorService executor;
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+    private final Set<String> unsupported = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public ThumbnailService(BlobStorageService blobStorageService,
+                            @Value("${storage.avatars.thumbnail-threads:2}") int threads) {
+        this.blobStorageService = blobStorageService;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "avatar-thumbnails-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static String getKey(String hash, int size) {
+        return hash + "-" + size;
+    }
+
+    public String resolve(String hash, int size) {
+        Integer variant = SIZES.stream().filter(candidate -> candidate >= size).findFirst().orElse(null);
+        if (variant == null) {
+            return hash;
+        }
+        String key = getKey(hash, variant);
+        if (blobStorageService.exists(key)) {
+            return key;
+        }
+        schedule(hash);
+        return hash;
+    }
+
+    public void schedule(String hash) {
+        if (unsupported.contains(hash) || !inProgress.add(hash)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                generate(hash);
+            } catch (IOException | RuntimeException e) {
+                unsupported.add(hash);
+                log.error("Failed to create thumbnails for " + hash, e);
+            } finally {
+                inProgress.remove(hash);
+            }
+        });
+    }
+
+    public boolean isImage(byte[] data) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            return input != null && ImageFormat.getContentType(input) != null && read(input) != null;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to decode image: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void generate(String hash) throws IOException {
+        if (SIZES.stream().allMatch(size -> blobStorageService.exists(getKey(hash, size)))) {
+            return;
+        }
+        BufferedImage image = read(blobStorageService.getPath(hash));
+        if (image == null) {
+            unsupported.add(hash);
+            log.warn("Unsupported avatar " + hash + ", thumbnails are not created");
+            return;
+        }
+
+        boolean alpha = image.getColorModel().hasAlpha();
+        for (int i = SIZES.size() - 1; i >= 0; i--) {
+            int size = SIZES.get(i);
+            image = scale(image, size, alpha);
+            blobStorageService.put(getKey(hash, size), encode(image, alpha));
+        }
+        log.info("Thumbnails for " + hash + " created");
+    }
+
+    private BufferedImage read(Path path) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            return input == null ? null : read(input);
+        }
+    }
+
+    private BufferedImage read(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                return null;
+            }
+            return reader.read(0);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image, int size, boolean alpha) {
+        double ratio = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+
+        BufferedImage current = image;
+        do {
+            current = resize(current,
+                    Math.max(width, current.getWidth() / 2),
+                    Math.max(height, current.getHeight() / 2),
+                    alpha);
+        } while (current.getWidth() != width || current.getHeight() != height);
+        return current;
+    }
+
+    private BufferedImage resize(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage result = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    private byte[] encode(BufferedImage image, boolean alpha) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (alpha) {
+            ImageIO.write(image, "png", output);
+            return output.toByteArray();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.vsu.cs.api.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.vsu.cs.api.utils.exceptions.ChannelException;
+import ru.vsu.cs.api.utils.exceptions.ChatException;
+import ru.vsu.cs.api.utils.mapper.Mapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class TypingService {
+    private final ChatService chatService;
+    private final ChannelMembershipService channelMembershipService;
+    private final BroadcastService broadcastService;
+    private final Map<TypingKey, Typing> typing = new ConcurrentHashMap<>();
+
+    @Value("${typing.ttl:6000}")
+    private long ttl;
+    @Value("${typing.min-interval:2000}")
+    private long minInterval;
+
+    @Autowired
+    public TypingService(ChatService chatService, ChannelMembershipService channelMembershipService,
+                         BroadcastService broadcastService) {
+        this.chatService = chatService;
+        this.channelMembershipService = channelMembershipService;
+        this.broadcastService = broadcastService;
+    }
+
+    public void updateChat(long chatId, long userId, boolean isTyping) {
+        if (!chatService.getMembers(chatId).contains(userId)) {
+            log.warn("User with id " + userId + " is not a member of chat " + chatId);
+            throw new ChatException("Пользователь не является участником чата: " + chatId);
+        }
+        update(new TypingKey(chatId, null, userId), isTyping);
+    }
+
+    public void updateChannel(long channelId, long userId, boolean isTyping) {
+        if (channelMembershipService.get(channelId, userId).isEmpty()) {
+            log.warn("User with id " + userId + " is not a member of channel " + channelId);
+            throw new ChannelException("Пользователь не является участником канала: " + channelId);
+        }
+        update(new TypingKey(null, channelId, userId), isTyping);
+    }
+
+    @Scheduled(fixedDelayString = "${typing.sweep-interval:1000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        List<TypingKey> expired = new ArrayList<>();
+        typing.forEach((key, state) -> {
+            if (state.expiresAt() <= now && typing.remove(key, state)) {
+                expired.add(key);
+            }
+        });
+        expired.forEach(key -> send(key, false));
+    }
+
+    private void update(TypingKey key, boolean isTyping) {
+        if (!isTyping) {
+            if (typing.remove(key) != null) {
+                send(key, false);
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean[] started = {false};
+        typing.compute(key, (k, current) -> {
+            if (current == null || now - current.sentAt() >= minInterval) {
+                started[0] = true;
+                return new Typing(now, now + ttl);
+            }
+            return new Typing(current.sentAt(), now + ttl);
+        });
+        if (started[0]) {
+            send(key, true);
+        }
+    }
+
+    private void send(TypingKey key, boolean isTyping) {
+        broadcastService.sendTyping(Mapper.convertToTypingDto(key.chatId(), key.channelId(), key.userId(), isTyping));
+    }
+
+    private record TypingKey(Long chatId, Long channelId, long userId) {
+    }
+
+    private record Typing(long sentAt, long expiresAt) {
+    }
+}
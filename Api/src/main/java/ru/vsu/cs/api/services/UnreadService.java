@@ -0,0 +1,233 @@
+package ru.vsu.cs.api.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vsu.cs.api.models.Message;
+import ru.vsu.cs.api.repositories.projections.UnreadCounter;
+import ru.vsu.cs.api.utils.exceptions.ChannelException;
+import ru.vsu.cs.api.utils.exceptions.ChatException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+@Service
+@Slf4j
+public class UnreadService {
+    private static final String INCREMENT_CHATS = "update chats c set message_count = c.message_count + v.count, " +
+            "last_message_id = greatest(c.last_message_id, v.last_id) " +
+            "from unnest(?::bigint[], ?::bigint[], ?::bigint[]) as v(id, count, last_id) " +
+            "where c.id = v.id returning c.id, c.message_count";
+    private static final String INCREMENT_CHANNELS = "update channels c set message_count = c.message_count + v.count, " +
+            "last_message_id = greatest(c.last_message_id, v.last_id) " +
+            "from unnest(?::bigint[], ?::bigint[], ?::bigint[]) as v(id, count, last_id) " +
+            "where c.id = v.id returning c.id, c.message_count";
+    private static final String UPSERT_CHAT_POINTERS = "insert into read_pointers " +
+            "(user_id, chat_id, last_read_message_id, read_count) values (?, ?, ?, ?) " +
+            "on conflict (user_id, chat_id) where chat_id is not null do update " +
+            "set last_read_message_id = excluded.last_read_message_id, read_count = excluded.read_count " +
+            "where read_pointers.read_count < excluded.read_count";
+    private static final String UPSERT_CHANNEL_POINTERS = "insert into read_pointers " +
+            "(user_id, channel_id, last_read_message_id, read_count) values (?, ?, ?, ?) " +
+            "on conflict (user_id, channel_id) where channel_id is not null do update " +
+            "set last_read_message_id = excluded.last_read_message_id, read_count = excluded.read_count " +
+            "where read_pointers.read_count < excluded.read_count";
+    private static final String START_CHANNEL_POINTER = "insert into read_pointers " +
+            "(user_id, channel_id, last_read_message_id, read_count) " +
+            "select ?, id, last_message_id, message_count from channels where id = ? " +
+            "on conflict (user_id, channel_id) where channel_id is not null do update " +
+            "set last_read_message_id = excluded.last_read_message_id, read_count = excluded.read_count";
+    private static final String SELECT_COUNTERS = """
+            select c.id as chat_id, null as channel_id, c.message_count, c.last_message_id,
+                   coalesce(p.read_count, 0) as read_count, p.last_read_message_id
+            from chats c
+                     left join read_pointers p on p.chat_id = c.id and p.user_id = ?
+            where c.first_user = ? or c.second_user = ?
+            union all
+            select null, ch.id, ch.message_count, ch.last_message_id,
+                   coalesce(p.read_count, 0), p.last_read_message_id
+            from members m
+                     join channels ch on ch.id = m.channel_id
+                     left join read_pointers p on p.channel_id = ch.id and p.user_id = ?
+            where m.user_id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatService chatService;
+    private final ChannelMembershipService channelMembershipService;
+    private final Map<ReadKey, ReadPointer> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    public UnreadService(JdbcTemplate jdbcTemplate, ChatService chatService,
+                         ChannelMembershipService channelMembershipService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chatService = chatService;
+        this.channelMembershipService = channelMembershipService;
+    }
+
+    public void recordMessages(Collection<Message> messages) {
+        Map<Long, Head> chats = new TreeMap<>();
+        Map<Long, Head> channels = new TreeMap<>();
+        for (Message message : messages) {
+            Head head = new Head(1, message.getId(), message.getSender().getId());
+            if (message.getChannel() == null) {
+                chats.merge(message.getChat().getId(), head, Head::merge);
+            } else {
+                channels.merge(message.getChannel().getId(), head, Head::merge);
+            }
+        }
+        increment(INCREMENT_CHATS, chats, (userId, chatId) -> new ReadKey(userId, chatId, null));
+        increment(INCREMENT_CHANNELS, channels, (userId, channelId) -> new ReadKey(userId, null, channelId));
+    }
+
+    public void markChatRead(long userId, long chatId) {
+        if (!chatService.getMembers(chatId).contains(userId)) {
+            log.warn("User with id " + userId + " is not a member of chat " + chatId);
+            throw new ChatException("Пользователь не является участником чата: " + chatId);
+        }
+        Head head = jdbcTemplate.queryForObject("select message_count, last_message_id from chats where id = ?",
+                (rs, rowNum) -> new Head(rs.getLong(1), rs.getObject(2, Long.class), null), chatId);
+        pending.merge(new ReadKey(userId, chatId, null), new ReadPointer(head.count(), head.lastId()), ReadPointer::max);
+    }
+
+    public void markChannelRead(long userId, long channelId) {
+        if (channelMembershipService.get(channelId, userId).isEmpty()) {
+            log.warn("User with id " + userId + " is not a member of channel " + channelId);
+            throw new ChannelException("Пользователь не является участником канала: " + channelId);
+        }
+        Head head = jdbcTemplate.queryForObject("select message_count, last_message_id from channels where id = ?",
+                (rs, rowNum) -> new Head(rs.getLong(1), rs.getObject(2, Long.class), null), channelId);
+        pending.merge(new ReadKey(userId, null, channelId), new ReadPointer(head.count(), head.lastId()),
+                ReadPointer::max);
+    }
+
+    public void markChannelJoined(long userId, long channelId) {
+        pending.remove(new ReadKey(userId, null, channelId));
+        jdbcTemplate.update(START_CHANNEL_POINTER, userId, channelId);
+    }
+
+    public List<UnreadCounter> getUnread(long userId) {
+        List<UnreadCounter> counters = jdbcTemplate.query(SELECT_COUNTERS, (rs, rowNum) -> new UnreadCounter(
+                rs.getObject("chat_id", Long.class),
+                rs.getObject("channel_id", Long.class),
+                rs.getLong("message_count"),
+                rs.getObject("last_message_id", Long.class),
+                rs.getLong("read_count"),
+                rs.getObject("last_read_message_id", Long.class)
+        ), userId, userId, userId, userId, userId);
+
+        return counters.stream().map(counter -> {
+            ReadPointer pointer = getPending(userId, counter.chatId(), counter.channelId(), counter.readCount());
+            return pointer == null ? counter : counter.withRead(pointer.readCount(), pointer.lastReadMessageId());
+        }).toList();
+    }
+
+    long getReadCount(long userId, Long chatId, Long channelId, long flushedReadCount) {
+        ReadPointer pointer = getPending(userId, chatId, channelId, flushedReadCount);
+        return pointer == null ? flushedReadCount : pointer.readCount();
+    }
+
+    @Scheduled(fixedDelayString = "${unread.flush-interval:1000}")
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<ReadKey, ReadPointer> snapshot = new HashMap<>(pending);
+        List<Map.Entry<ReadKey, ReadPointer>> chats = new ArrayList<>();
+        List<Map.Entry<ReadKey, ReadPointer>> channels = new ArrayList<>();
+        snapshot.entrySet().forEach(entry -> (entry.getKey().chatId() != null ? chats : channels).add(entry));
+
+        write(UPSERT_CHAT_POINTERS, chats);
+        write(UPSERT_CHANNEL_POINTERS, channels);
+        snapshot.forEach(pending::remove);
+        log.debug("Flushed " + snapshot.size() + " read pointers");
+    }
+
+    private ReadPointer getPending(long userId, Long chatId, Long channelId, long flushedReadCount) {
+        ReadPointer pointer = pending.get(new ReadKey(userId, chatId, channelId));
+        return pointer == null || pointer.readCount() <= flushedReadCount ? null : pointer;
+    }
+
+    private void increment(String sql, Map<Long, Head> heads, BiFunction<Long, Long, ReadKey> readKey) {
+        if (heads.isEmpty()) {
+            return;
+        }
+        Long[] ids = heads.keySet().toArray(Long[]::new);
+        Long[] counts = heads.values().stream().map(Head::count).toArray(Long[]::new);
+        Long[] lastIds = heads.values().stream().map(Head::lastId).toArray(Long[]::new);
+
+        Map<ReadKey, ReadPointer> senders = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            Head head = heads.get(rs.getLong(1));
+            senders.put(readKey.apply(head.lastSenderId(), rs.getLong(1)), new ReadPointer(rs.getLong(2), head.lastId()));
+        }, ids, counts, lastIds);
+
+        afterCommit(() -> senders.forEach((key, pointer) -> pending.merge(key, pointer, ReadPointer::max)));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void write(String sql, List<Map.Entry<ReadKey, ReadPointer>> pointers) {
+        if (pointers.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(sql, pointers.stream().map(this::toArgs).toList());
+        } catch (DataAccessException e) {
+            log.warn("Flush of " + pointers.size() + " read pointers failed, retrying one by one: " + e.getMessage());
+            for (Map.Entry<ReadKey, ReadPointer> pointer : pointers) {
+                try {
+                    jdbcTemplate.update(sql, toArgs(pointer));
+                } catch (DataAccessException ex) {
+                    log.warn("Dropped read pointer " + pointer.getKey() + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private Object[] toArgs(Map.Entry<ReadKey, ReadPointer> pointer) {
+        ReadKey key = pointer.getKey();
+        return new Object[]{key.userId(), key.chatId() != null ? key.chatId() : key.channelId(),
+                pointer.getValue().lastReadMessageId(), pointer.getValue().readCount()};
+    }
+
+    private record ReadKey(long userId, Long chatId, Long channelId) {
+    }
+
+    private record ReadPointer(long readCount, Long lastReadMessageId) {
+        private static ReadPointer max(ReadPointer first, ReadPointer second) {
+            return first.readCount() >= second.readCount() ? first : second;
+        }
+    }
+
+    private record Head(long count, Long lastId, Long lastSenderId) {
+        private static Head merge(Head first, Head second) {
+            Head last = first.lastId() > second.lastId() ? first : second;
+            return new Head(first.count() + second.count(), last.lastId(), last.lastSenderId());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.vsu.cs.api.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
+import ru.vsu.cs.api.models.User;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+@Service
+@Slf4j
+public class UserCacheService {
+    private final Cache<Long, Snapshot> byId;
+    private final Cache<String, Snapshot> byName;
+    private final Cache<String, Snapshot> byEmail;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public UserCacheService(MeterRegistry meterRegistry,
+                            @Value("${cache.users.max-size:10000}") long maxSize,
+                            @Value("${cache.users.ttl:300}") long ttl) {
+        this.byId = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttl), "users.by-id");
+        this.byName = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttl), "users.by-name");
+        this.byEmail = CaffeineCacheMetrics.monitor(meterRegistry, build(maxSize, ttl), "users.by-email");
+    }
+
+    public Optional<User> getById(long id, Function<Long, Optional<User>> loader) {
+        return get(byId, id, loader);
+    }
+
+    public Optional<User> getByName(String name, Function<String, Optional<User>> loader) {
+        return get(byName, name, loader);
+    }
+
+    public Optional<User> getByEmail(String email, Function<String, Optional<User>> loader) {
+        return get(byEmail, email, loader);
+    }
+
+    public Map<Long, User> getAllById(Collection<Long> ids, Function<Collection<Long>, List<User>> loader) {
+        Map<Long, User> users = new HashMap<>();
+        byId.getAllPresent(ids).forEach((id, snapshot) -> users.put(id, snapshot.toUser()));
+        List<Long> missing = ids.stream().filter(id -> !users.containsKey(id)).distinct().toList();
+        if (!missing.isEmpty()) {
+            long generation = invalidations.get();
+            loader.apply(missing).forEach(user -> users.put(user.getId(), put(user, generation).toUser()));
+        }
+        return users;
+    }
+
+    public void evict(User user) {
+        long id = user.getId();
+        String name = user.getName();
+        String email = user.getEmail();
+
+        invalidate(id, name, email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(id, name, email);
+                }
+            });
+        }
+    }
+
+    @EventListener
+    public void onInvalidation(CacheInvalidationEvent event) {
+        invalidations.incrementAndGet();
+        switch (event.type()) {
+            case ALL -> {
+                byId.invalidateAll();
+                byName.invalidateAll();
+                byEmail.invalidateAll();
+            }
+            case USER -> {
+                byId.invalidate(event.id());
+                byName.asMap().values().removeIf(snapshot -> snapshot.id() == event.id());
+                byEmail.asMap().values().removeIf(snapshot -> snapshot.id() == event.id());
+            }
+        }
+    }
+
+    private void invalidate(long id, String name, String email) {
+        invalidations.incrementAndGet();
+        Snapshot cached = byId.getIfPresent(id);
+        if (cached != null) {
+            byName.invalidate(cached.name());
+            byEmail.invalidate(cached.email());
+        }
+        byId.invalidate(id);
+        byName.invalidate(name);
+        byEmail.invalidate(email);
+        log.debug("Evicted user with id " + id + " from cache");
+    }
+
+    private <K> Optional<User> get(Cache<K, Snapshot> cache, K key, Function<K, Optional<User>> loader) {
+        Snapshot snapshot = cache.getIfPresent(key);
+        if (snapshot != null) {
+            return Optional.of(snapshot.toUser());
+        }
+        long generation = invalidations.get();
+        return loader.apply(key).map(user -> put(user, generation).toUser());
+    }
+
+    // A row loaded before an invalidation may predate the write that caused it, so it is not kept.
+    private Snapshot put(User user, long generation) {
+        Snapshot snapshot = Snapshot.of(user);
+        if (invalidations.get() != generation) {
+            return snapshot;
+        }
+        byId.put(snapshot.id(), snapshot);
+        byName.put(snapshot.name(), snapshot);
+        byEmail.put(snapshot.email(), snapshot);
+        if (invalidations.get() != generation) {
+            byId.invalidate(snapshot.id());
+            byName.invalidate(snapshot.name());
+            byEmail.invalidate(snapshot.email());
+        }
+        return snapshot;
+    }
+
+    private static <K> Cache<K, Snapshot> build(long maxSize, long ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttl))
+                .recordStats()
+                .build();
+    }
+
+    private record Snapshot(long id, Long version, String name, String email, String avatarHash) {
+        private static Snapshot of(User user) {
+            return new Snapshot(user.getId(), user.getVersion(), user.getName(), user.getEmail(), user.getAvatarHash());
+        }
+
+        private User toUser() {
+            User user = new User();
+            user.setId(id);
+            user.setVersion(version);
+            user.setName(name);
+            user.setEmail(email);
+            user.setAvatarHash(avatarHash);
+            return user;
+        }
+    }
+}
@@ -2,40 +2,66 @@ package ru.vsu.cs.api.services;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.vsu.cs.api.events.CacheInvalidationEvent;
 import ru.vsu.cs.api.models.User;
 import ru.vsu.cs.api.repositories.UserRepository;
+import ru.vsu.cs.api.repositories.projections.UserSummary;
+import ru.vsu.cs.api.utils.EntityTag;
+import ru.vsu.cs.api.utils.exceptions.BlobException;
+import ru.vsu.cs.api.utils.exceptions.CursorException;
+import ru.vsu.cs.api.utils.exceptions.ImageException;
 import ru.vsu.cs.api.utils.exceptions.UserException;
 
-import java.math.BigInteger;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @Transactional(readOnly = true)
 @Slf4j
 public class UserService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final BlobStorageService blobStorageService;
+    private final ThumbnailService thumbnailService;
+    private final UserCacheService userCacheService;
+    private final ChatService chatService;
+    private final ChannelMembershipService channelMembershipService;
+    private final NotificationService notificationService;
 
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                       BlobStorageService blobStorageService, ThumbnailService thumbnailService,
+                       UserCacheService userCacheService, ChatService chatService,
+                       ChannelMembershipService channelMembershipService, NotificationService notificationService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.blobStorageService = blobStorageService;
+        this.thumbnailService = thumbnailService;
+        this.userCacheService = userCacheService;
+        this.chatService = chatService;
+        this.channelMembershipService = channelMembershipService;
+        this.notificationService = notificationService;
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public User getUserByEmail(String email) {
-        User user = userRepository.findByEmail(email).orElse(null);
-        if (user == null) {
-            log.warn("Not found user with email: " + email);
-            throw new UserException("Не существует пользователя с такой почтой: " + email);
-        }
-        return user;
+        return checkFoundByEmail(userCacheService.getByEmail(email, userRepository::findByEmail).orElse(null), email);
     }
 
     public User login(String email, String password) {
-        User user = getUserByEmail(email);
+        User user = checkFoundByEmail(userRepository.findByEmail(email).orElse(null), email);
         if (passwordEncoder.matches(password, user.getPassword())) {
             return user;
         } else {
@@ -44,8 +70,9 @@ public class UserService {
         }
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
     public User getUserByName(String name) {
-        User user = userRepository.findByName(name).orElse(null);
+        User user = userCacheService.getByName(name, userRepository::findByName).orElse(null);
         if (user == null) {
             log.warn("Не существует пользователя с таким именем: " + name);
             throw new UserException("Not found user with name: " + name);
@@ -53,17 +80,35 @@ public class UserService {
         return user;
     }
 
-    public User getById(BigInteger id) {
-        User user = userRepository.findById(id).orElse(null);
-        if (user == null) {
-            log.warn("Not found user with id: " + id);
-            throw new UserException("Не существует пользователя с таким id: " + id);
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public User getById(long id) {
+        return checkFound(userCacheService.getById(id, userRepository::findById).orElse(null), id);
+    }
+
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Map<Long, User> getUsersByIds(Collection<Long> ids) {
+        return userCacheService.getAllById(ids, userRepository::findAllById);
+    }
+
+    public String getProfileTag(User user) {
+        String state = userRepository.findProfileState(user.getId());
+        if (state == null) {
+            log.warn("Not found user with id: " + user.getId());
+            throw new UserException("Не существует пользователя с таким id: " + user.getId());
         }
-        return user;
+        return EntityTag.of(state, user.getVersion());
+    }
+
+    public List<UserSummary> getUserSummaries() {
+        return userRepository.findSummaries();
     }
 
-    public List<User> getUsers() {
-        return userRepository.findAll();
+    public List<User> getUsers(long after, int limit) {
+        if (limit < 1) {
+            log.warn("Incorrect page size: " + limit);
+            throw new CursorException("Некорректный размер страницы: " + limit);
+        }
+        return userRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, Math.min(limit, MAX_PAGE_SIZE)));
     }
 
     @Transactional
@@ -81,57 +126,132 @@ public class UserService {
         log.info("User (" + user.getName() + ", " + user.getEmail() + ") registered successfully");
     }
 
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public String getAvatarHash(long id) {
+        User user = userCacheService.getById(id, userRepository::findById).orElse(null);
+        String hash = user == null ? null : user.getAvatarHash();
+        if (hash == null) {
+            log.warn("Not found avatar for user with id: " + id);
+            throw new UserException("Аватар не найден: " + id);
+        }
+        if (!blobStorageService.exists(hash)) {
+            byte[] image = userRepository.findImageById(id);
+            if (image == null) {
+                log.warn("Not found avatar blob " + hash + " for user with id: " + id);
+                throw new UserException("Аватар не найден: " + id);
+            }
+            blobStorageService.put(hash, image);
+            thumbnailService.schedule(hash);
+        }
+        return hash;
+    }
+
     @Transactional
-    public void updateImage(BigInteger id, byte[] array) {
-        User user = getById(id);
-        user.setImage(array);
+    public void updateImage(long id, InputStream image) {
+        User user = loadById(id);
+        byte[] data = image == null ? null : readImage(image);
+        evict(user);
+        String hash = data == null ? null : blobStorageService.put(new ByteArrayInputStream(data));
+        user.setAvatarHash(hash);
         userRepository.save(user);
+        if (data == null) {
+            userRepository.clearImage(id);
+        } else {
+            userRepository.updateImage(id, data);
+            thumbnailService.schedule(hash);
+        }
     }
 
 
     @Transactional
-    public void updateEmail(BigInteger id, String email) {
+    public void updateEmail(long id, String email) {
         User foundUserByEmail = userRepository.findByEmail(email).orElse(null);
-        User user = getById(id);
+        User user = loadById(id);
 
-        if (foundUserByEmail != null && !foundUserByEmail.getId().equals(id)) {
+        if (foundUserByEmail != null && foundUserByEmail.getId() != id) {
             log.warn("Exist user with email: " + email);
             throw new UserException("Пользователь с такой почтой уже существует: " + email);
         }
 
+        evict(user);
         user.setEmail(email);
 
         userRepository.save(user);
     }
 
     @Transactional
-    public void updateName(BigInteger id, String name) {
+    public void updateName(long id, String name) {
         User foundUserByName = userRepository.findByName(name).orElse(null);
-        User user = getById(id);
+        User user = loadById(id);
 
-        if (foundUserByName != null && !foundUserByName.getId().equals(id)) {
+        if (foundUserByName != null && foundUserByName.getId() != id) {
             log.warn("Exist user with nickname: " + name);
             throw new UserException("Пользователь с таким именем уже существует:: " + name);
         }
 
+        evict(user);
         user.setName(name);
 
         userRepository.save(user);
     }
 
     @Transactional
-    public void updatePassword(BigInteger id, String lastPassword, String newPassword) {
-        User user = getById(id);
+    public void updatePassword(long id, String lastPassword, String newPassword) {
+        User user = loadById(id);
         if (lastPassword !=null && !passwordEncoder.matches(lastPassword, user.getPassword())) {
             log.warn("Incorrect current password: " + lastPassword);
             throw new UserException("Неверный текущий пароль: " + lastPassword);
         }
+        evict(user);
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(user);
     }
 
     @Transactional
-    public void delete(BigInteger id) {
+    public void delete(long id) {
+        userRepository.findById(id).ifPresent(this::evict);
         userRepository.deleteById(id);
+        chatService.evictUser(id);
+        channelMembershipService.evictUser(id);
+    }
+
+    private void evict(User user) {
+        userCacheService.evict(user);
+        notificationService.publishInvalidation(CacheInvalidationEvent.Type.USER, user.getId());
+    }
+
+    private byte[] readImage(InputStream image) {
+        byte[] data;
+        try {
+            data = image.readAllBytes();
+        } catch (IOException e) {
+            log.warn("Failed to read avatar upload: " + e.getMessage());
+            throw new BlobException("Не удалось прочитать файл");
+        }
+        if (!thumbnailService.isImage(data)) {
+            log.warn("Rejected avatar upload that is not an image");
+            throw new ImageException("Файл не является изображением");
+        }
+        return data;
+    }
+
+    private User loadById(long id) {
+        return checkFound(userRepository.findById(id).orElse(null), id);
+    }
+
+    private User checkFoundByEmail(User user, String email) {
+        if (user == null) {
+            log.warn("Not found user with email: " + email);
+            throw new UserException("Не существует пользователя с такой почтой: " + email);
+        }
+        return user;
+    }
+
+    private User checkFound(User user, long id) {
+        if (user == null) {
+            log.warn("Not found user with id: " + id);
+            throw new UserException("Не существует пользователя с таким id: " + id);
+        }
+        return user;
     }
 }
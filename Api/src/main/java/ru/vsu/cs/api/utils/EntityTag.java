@@ -0,0 +1,18 @@
+package ru.vsu.cs.api.utils;
+
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+public class EntityTag {
+    private EntityTag() {
+    }
+
+    public static String of(Object... parts) {
+        String value = Arrays.stream(parts).map(Objects::toString).collect(Collectors.joining("|"));
+        return "\"" + DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
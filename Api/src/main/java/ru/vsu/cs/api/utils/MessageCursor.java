@@ -0,0 +1,46 @@
+package ru.vsu.cs.api.utils;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+import ru.vsu.cs.api.utils.exceptions.CursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+@Getter
+@AllArgsConstructor
+public class MessageCursor {
+    private static final String SEPARATOR = "_";
+
+    private final LocalDateTime date;
+    private final long id;
+
+    public static MessageCursor of(MessageView message) {
+        return new MessageCursor(message.date(), message.id());
+    }
+
+    public static String encode(MessageView message) {
+        return of(message).encode();
+    }
+
+    public static MessageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int index = value.lastIndexOf(SEPARATOR);
+            return new MessageCursor(LocalDateTime.parse(value.substring(0, index)),
+                    Long.parseLong(value.substring(index + 1)));
+        } catch (RuntimeException e) {
+            throw new CursorException("Некорректный курсор: " + token);
+        }
+    }
+
+    public String encode() {
+        String value = date + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,7 @@
+package ru.vsu.cs.api.utils.exceptions;
+
+public class BlobException extends RuntimeException {
+    public BlobException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.vsu.cs.api.utils.exceptions;
+
+public class CursorException extends RuntimeException {
+    public CursorException(String message) {
+        super(message);
+    }
+}
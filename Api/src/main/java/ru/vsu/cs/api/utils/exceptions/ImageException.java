@@ -0,0 +1,7 @@
+package ru.vsu.cs.api.utils.exceptions;
+
+public class ImageException extends RuntimeException {
+    public ImageException(String message) {
+        super(message);
+    }
+}
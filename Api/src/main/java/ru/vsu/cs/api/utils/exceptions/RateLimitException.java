@@ -0,0 +1,13 @@
+package ru.vsu.cs.api.utils.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class RateLimitException extends RuntimeException {
+    private final long retryAfter;
+
+    public RateLimitException(String message, long retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
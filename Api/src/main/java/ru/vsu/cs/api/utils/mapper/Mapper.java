@@ -7,6 +7,15 @@ import ru.vsu.cs.api.dto.search.ChannelSearchDto;
 import ru.vsu.cs.api.dto.search.ChatSearchDto;
 import ru.vsu.cs.api.dto.supporting.*;
 import ru.vsu.cs.api.models.*;
+import ru.vsu.cs.api.repositories.projections.ChannelMember;
+import ru.vsu.cs.api.repositories.projections.ChannelSummary;
+import ru.vsu.cs.api.repositories.projections.ConversationHead;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+import ru.vsu.cs.api.repositories.projections.UnreadCounter;
+import ru.vsu.cs.api.repositories.projections.UserSummary;
+import ru.vsu.cs.api.services.PresenceService;
+import ru.vsu.cs.api.services.ThumbnailService;
+import ru.vsu.cs.api.utils.MessageCursor;
 
 import java.util.List;
 
@@ -18,8 +27,7 @@ public class Mapper {
         userResponseDto.setId(user.getId());
         userResponseDto.setName(user.getName());
         userResponseDto.setEmail(user.getEmail());
-        userResponseDto.setPassword(user.getPassword());
-        userResponseDto.setImage(user.getImage());
+        userResponseDto.setAvatarUrl(getAvatarUrl(user));
         userResponseDto.setChats(chats.stream().map(Mapper::convertToChatSupportingDto).toList());
         userResponseDto.setSavedMessages(savedMessages.stream().map(Mapper::convertToSavedMessageSupportingDto).toList());
         userResponseDto.setChannels(channels.stream().map(Mapper::convertToChannelSupportingDto).toList());
@@ -46,6 +54,22 @@ public class Mapper {
         return chat;
     }
 
+    public static Member convertToMember(ChannelMember channelMember, Channel channel, User user) {
+        Role role = new Role(channelMember.roleName(), channelMember.isAdmin(), channelMember.isCreator());
+        role.setId(channelMember.roleId());
+
+        Member member = new Member(channel, user, role);
+        member.setId(channelMember.id());
+
+        return member;
+    }
+
+    public static ChannelMember convertToChannelMember(Member member) {
+        Role role = member.getRole();
+        return new ChannelMember(member.getId(), member.getUser().getId(), role.getId(), role.getName(),
+                role.getIsAdmin(), role.getIsCreator());
+    }
+
     public static ChatMessageDto convertToChatMessageDto(Message message) {
         ChatMessageDto chatMessageDto = new ChatMessageDto();
 
@@ -58,14 +82,43 @@ public class Mapper {
         return chatMessageDto;
     }
 
+    public static ChatMessageDto convertToChatMessageDto(MessageView message, Chat chat) {
+        ChatMessageDto chatMessageDto = new ChatMessageDto();
+
+        chatMessageDto.setId(message.id());
+        chatMessageDto.setSender(convertToUserSupportingDto(message.senderId(), message.senderName(),
+                message.senderAvatarHash()));
+        chatMessageDto.setChat(convertToChatSupportingDto(chat));
+        chatMessageDto.setData(message.data());
+        chatMessageDto.setDate(message.date());
+
+        return chatMessageDto;
+    }
+
+    public static ChatResponseDto convertToChatResponseDto(Chat chat, List<MessageView> messages,
+                                                           String before, String after) {
+        ChatResponseDto chatResponseDto = new ChatResponseDto();
+
+        chatResponseDto.setChat(convertToChatSupportingDto(chat));
+        chatResponseDto.setMessages(messages.stream().map(message -> convertToChatMessageDto(message, chat)).toList());
+        chatResponseDto.setPreviousCursor(getPreviousCursor(messages, before));
+        chatResponseDto.setNextCursor(getNextCursor(messages, after));
+
+        return chatResponseDto;
+    }
+
     public static ChannelResponseDto convertToChannelResponseDto(Channel channel, List<Member> members,
-                                                                 List<Message> messages) {
+                                                                 List<MessageView> messages, String before,
+                                                                 String after) {
         ChannelResponseDto channelResponseDto = new ChannelResponseDto();
 
         channelResponseDto.setChannel(convertToChannelSupportingDto(channel));
         channelResponseDto.setCreator(convertToUserSupportingDto(channel.getCreator()));
         channelResponseDto.setMembers(members.stream().map(Mapper::convertToMemberSupportingDto).toList());
-        channelResponseDto.setMessages(messages.stream().map(Mapper::convertToChannelMessageDto).toList());
+        channelResponseDto.setMessages(messages.stream()
+                .map(message -> convertToChannelMessageDto(message, channel)).toList());
+        channelResponseDto.setPreviousCursor(getPreviousCursor(messages, before));
+        channelResponseDto.setNextCursor(getNextCursor(messages, after));
 
         return channelResponseDto;
     }
@@ -82,24 +135,87 @@ public class Mapper {
         return channelMessageDto;
     }
 
-    public static ChannelSearchDto convertToChannelDto(Channel channel) {
+    public static ChannelMessageDto convertToChannelMessageDto(MessageView message, Channel channel) {
+        ChannelMessageDto channelMessageDto = new ChannelMessageDto();
+
+        channelMessageDto.setId(message.id());
+        channelMessageDto.setChannelName(channel.getName());
+        channelMessageDto.setData(message.data());
+        channelMessageDto.setSender(convertToUserSupportingDto(message.senderId(), message.senderName(),
+                message.senderAvatarHash()));
+        channelMessageDto.setDate(message.date());
+
+        return channelMessageDto;
+    }
+
+    public static ChannelSearchDto convertToChannelDto(ChannelSummary channel) {
         ChannelSearchDto channelSearchDto = new ChannelSearchDto();
 
-        channelSearchDto.setId(channel.getId());
-        channelSearchDto.setName(channel.getName());
+        channelSearchDto.setId(channel.id());
+        channelSearchDto.setName(channel.name());
 
         return channelSearchDto;
     }
 
-    public static ChatSearchDto convertToChatSearchDto(User user) {
+    public static ChatSearchDto convertToChatSearchDto(UserSummary user, PresenceService.Presence presence) {
         ChatSearchDto chatSearchDto = new ChatSearchDto();
 
-        chatSearchDto.setName(user.getName());
-        chatSearchDto.setImage(user.getImage());
+        chatSearchDto.setName(user.name());
+        chatSearchDto.setAvatarUrl(getAvatarUrl(user.id(), user.avatarHash(), ThumbnailService.LIST_SIZE));
+        chatSearchDto.setOnline(presence.online());
+        chatSearchDto.setLastSeen(presence.lastSeen());
 
         return chatSearchDto;
     }
 
+    public static UnreadCounterDto convertToUnreadCounterDto(UnreadCounter counter) {
+        UnreadCounterDto unreadCounterDto = new UnreadCounterDto();
+
+        unreadCounterDto.setChatId(counter.chatId());
+        unreadCounterDto.setChannelId(counter.channelId());
+        unreadCounterDto.setUnread(counter.unread());
+        unreadCounterDto.setLastMessageId(counter.lastMessageId());
+        unreadCounterDto.setLastReadMessageId(counter.lastReadMessageId());
+
+        return unreadCounterDto;
+    }
+
+
+    public static PresenceDto convertToPresenceDto(Long userId, PresenceService.Presence presence) {
+        PresenceDto presenceDto = new PresenceDto();
+
+        presenceDto.setUserId(userId);
+        presenceDto.setOnline(presence.online());
+        presenceDto.setLastSeen(presence.lastSeen());
+
+        return presenceDto;
+    }
+
+    public static TypingDto convertToTypingDto(Long chatId, Long channelId, Long userId, boolean typing) {
+        TypingDto typingDto = new TypingDto();
+
+        typingDto.setChatId(chatId);
+        typingDto.setChannelId(channelId);
+        typingDto.setUserId(userId);
+        typingDto.setTyping(typing);
+
+        return typingDto;
+    }
+
+    public static InboxEntryDto convertToInboxEntryDto(ConversationHead head) {
+        InboxEntryDto inboxEntryDto = new InboxEntryDto();
+
+        inboxEntryDto.setChatId(head.chatId());
+        inboxEntryDto.setChannelId(head.channelId());
+        inboxEntryDto.setName(head.name());
+        inboxEntryDto.setAvatarUrl(getAvatarUrl(head.peerId(), head.peerAvatarHash(), ThumbnailService.LIST_SIZE));
+        inboxEntryDto.setUnread(head.unread());
+        if (head.lastMessage() != null) {
+            inboxEntryDto.setLastMessage(convertToMessagePreviewSupportingDto(head.lastMessage()));
+        }
+
+        return inboxEntryDto;
+    }
 
     private static ChatSupportingDto convertToChatSupportingDto(Chat chat) {
         ChatSupportingDto chatSupportingDto = new ChatSupportingDto();
@@ -112,11 +228,15 @@ public class Mapper {
     }
 
     private static UserSupportingDto convertToUserSupportingDto(User user) {
+        return convertToUserSupportingDto(user.getId(), user.getName(), user.getAvatarHash());
+    }
+
+    private static UserSupportingDto convertToUserSupportingDto(Long id, String name, String avatarHash) {
         UserSupportingDto userSupportingDto = new UserSupportingDto();
 
-        userSupportingDto.setId(user.getId());
-        userSupportingDto.setName(user.getName());
-        userSupportingDto.setImage(user.getImage());
+        userSupportingDto.setId(id);
+        userSupportingDto.setName(name);
+        userSupportingDto.setAvatarUrl(getAvatarUrl(id, avatarHash, ThumbnailService.LIST_SIZE));
 
         return userSupportingDto;
     }
@@ -149,6 +269,18 @@ public class Mapper {
         return memberSupportingDto;
     }
 
+    private static MessagePreviewSupportingDto convertToMessagePreviewSupportingDto(MessageView message) {
+        MessagePreviewSupportingDto messagePreviewSupportingDto = new MessagePreviewSupportingDto();
+
+        messagePreviewSupportingDto.setId(message.id());
+        messagePreviewSupportingDto.setData(message.data());
+        messagePreviewSupportingDto.setDate(message.date());
+        messagePreviewSupportingDto.setSender(convertToUserSupportingDto(message.senderId(), message.senderName(),
+                message.senderAvatarHash()));
+
+        return messagePreviewSupportingDto;
+    }
+
     private static SavedMessageSupportingDto convertToSavedMessageSupportingDto(Message message) {
         SavedMessageSupportingDto savedMessageSupportingDto = new SavedMessageSupportingDto();
 
@@ -163,4 +295,24 @@ public class Mapper {
 
         return savedMessageSupportingDto;
     }
+
+    private static String getAvatarUrl(User user) {
+        return getAvatarUrl(user.getId(), user.getAvatarHash());
+    }
+
+    private static String getAvatarUrl(Long id, String avatarHash) {
+        return avatarHash == null ? null : "/api/users/" + id + "/avatar?v=" + avatarHash;
+    }
+
+    private static String getAvatarUrl(Long id, String avatarHash, int size) {
+        return avatarHash == null ? null : getAvatarUrl(id, avatarHash) + "&size=" + size;
+    }
+
+    private static String getPreviousCursor(List<MessageView> messages, String before) {
+        return messages.isEmpty() ? before : MessageCursor.encode(messages.get(0));
+    }
+
+    private static String getNextCursor(List<MessageView> messages, String after) {
+        return messages.isEmpty() ? after : MessageCursor.encode(messages.get(messages.size() - 1));
+    }
 }
@@ -0,0 +1 @@
+ALTER SEQUENCE messages_seq INCREMENT BY 1;
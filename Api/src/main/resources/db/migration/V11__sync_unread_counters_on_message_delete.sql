@@ -0,0 +1,51 @@
+CREATE INDEX messages_sender_idx ON messages (sender);
+
+CREATE FUNCTION sync_unread_counters_on_message_delete() RETURNS trigger AS
+$$
+BEGIN
+    UPDATE chats c
+    SET message_count   = greatest(c.message_count - d.message_count, 0),
+        last_message_id = (SELECT m.id FROM messages m WHERE m.chat = c.id ORDER BY m.date DESC, m.id DESC LIMIT 1)
+    FROM (SELECT chat, count(*) AS message_count FROM deleted WHERE chat IS NOT NULL GROUP BY chat) d
+    WHERE c.id = d.chat;
+
+    UPDATE channels ch
+    SET message_count   = greatest(ch.message_count - d.message_count, 0),
+        last_message_id = (SELECT m.id FROM messages m WHERE m.channel = ch.id ORDER BY m.date DESC, m.id DESC LIMIT 1)
+    FROM (SELECT channel, count(*) AS message_count FROM deleted WHERE channel IS NOT NULL GROUP BY channel) d
+    WHERE ch.id = d.channel;
+
+    UPDATE read_pointers p
+    SET read_count = greatest(p.read_count - d.message_count, 0)
+    FROM (SELECT rp.user_id, rp.chat_id, rp.channel_id, count(*) AS message_count
+          FROM read_pointers rp
+                   JOIN deleted m ON (m.chat = rp.chat_id OR m.channel = rp.channel_id)
+              AND m.id <= rp.last_read_message_id
+          GROUP BY rp.user_id, rp.chat_id, rp.channel_id) d
+    WHERE p.user_id = d.user_id
+      AND p.chat_id IS NOT DISTINCT FROM d.chat_id
+      AND p.channel_id IS NOT DISTINCT FROM d.channel_id;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER messages_sync_unread_counters
+    AFTER DELETE
+    ON messages
+    REFERENCING OLD TABLE AS deleted
+    FOR EACH STATEMENT
+EXECUTE FUNCTION sync_unread_counters_on_message_delete();
+
+UPDATE chats c
+SET message_count   = (SELECT count(*) FROM messages m WHERE m.chat = c.id),
+    last_message_id = (SELECT m.id FROM messages m WHERE m.chat = c.id ORDER BY m.date DESC, m.id DESC LIMIT 1);
+
+UPDATE channels ch
+SET message_count   = (SELECT count(*) FROM messages m WHERE m.channel = ch.id),
+    last_message_id = (SELECT m.id FROM messages m WHERE m.channel = ch.id ORDER BY m.date DESC, m.id DESC LIMIT 1);
+
+UPDATE read_pointers p
+SET read_count = least(p.read_count, coalesce(
+        (SELECT count(*) FROM messages m WHERE (m.chat = p.chat_id OR m.channel = p.channel_id)
+                                           AND m.id <= p.last_read_message_id), 0));
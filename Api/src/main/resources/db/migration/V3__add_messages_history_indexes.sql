@@ -0,0 +1,9 @@
+UPDATE messages
+SET date = now()
+WHERE date IS NULL;
+
+ALTER TABLE messages
+    ALTER COLUMN date SET NOT NULL;
+
+CREATE INDEX messages_chat_date_id_idx ON messages (chat, date, id);
+CREATE INDEX messages_channel_date_id_idx ON messages (channel, date, id);
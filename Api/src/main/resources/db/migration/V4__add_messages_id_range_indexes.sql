@@ -0,0 +1,2 @@
+CREATE INDEX messages_chat_id_idx ON messages (chat, id);
+CREATE INDEX messages_channel_id_idx ON messages (channel, id);
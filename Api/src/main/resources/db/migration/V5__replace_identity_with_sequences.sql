@@ -0,0 +1,16 @@
+DO
+$$
+    DECLARE
+        table_name text;
+    BEGIN
+        FOREACH table_name IN ARRAY ARRAY ['users', 'chats', 'channels', 'messages', 'roles', 'members', 'saved_messages']
+            LOOP
+                EXECUTE format('ALTER TABLE %I ALTER COLUMN id DROP IDENTITY', table_name);
+                EXECUTE format('CREATE SEQUENCE %I INCREMENT BY 50 OWNED BY %I.id', table_name || '_seq', table_name);
+                EXECUTE format('SELECT setval(%L, (SELECT coalesce(max(id), 0) + 50 FROM %I), false)',
+                               table_name || '_seq', table_name);
+                EXECUTE format('ALTER TABLE %I ALTER COLUMN id SET DEFAULT nextval(%L)', table_name,
+                               table_name || '_seq');
+            END LOOP;
+    END
+$$;
@@ -0,0 +1,6 @@
+ALTER TABLE users
+    ADD COLUMN avatar_hash varchar(64);
+
+UPDATE users
+SET avatar_hash = encode(sha256(image), 'hex')
+WHERE image IS NOT NULL;
@@ -0,0 +1,11 @@
+ALTER TABLE users
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE channels
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE members
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE messages
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,22 @@
+WITH pairs AS (SELECT id,
+                      min(id) OVER (PARTITION BY least(first_user, second_user), greatest(first_user, second_user)) AS kept_id
+               FROM chats)
+UPDATE messages m
+SET chat = p.kept_id
+FROM pairs p
+WHERE m.chat = p.id
+  AND p.id <> p.kept_id;
+
+DELETE
+FROM chats c
+    USING chats k
+WHERE least(c.first_user, c.second_user) = least(k.first_user, k.second_user)
+  AND greatest(c.first_user, c.second_user) = greatest(k.first_user, k.second_user)
+  AND k.id < c.id;
+
+ALTER TABLE chats
+    DROP CONSTRAINT chats_first_user_second_user_key;
+
+CREATE UNIQUE INDEX chats_pair_idx ON chats (least(first_user, second_user), greatest(first_user, second_user));
+CREATE INDEX chats_first_user_idx ON chats (first_user);
+CREATE INDEX chats_second_user_idx ON chats (second_user);
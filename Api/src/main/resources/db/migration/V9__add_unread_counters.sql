@@ -0,0 +1,41 @@
+ALTER TABLE chats
+    ADD COLUMN message_count   BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN last_message_id BIGINT;
+
+ALTER TABLE channels
+    ADD COLUMN message_count   BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN last_message_id BIGINT;
+
+UPDATE chats c
+SET message_count   = s.message_count,
+    last_message_id = s.last_message_id
+FROM (SELECT chat, count(*) AS message_count, (array_agg(id ORDER BY date DESC, id DESC))[1] AS last_message_id
+      FROM messages
+      WHERE chat IS NOT NULL
+      GROUP BY chat) s
+WHERE c.id = s.chat;
+
+UPDATE channels ch
+SET message_count   = s.message_count,
+    last_message_id = s.last_message_id
+FROM (SELECT channel, count(*) AS message_count, (array_agg(id ORDER BY date DESC, id DESC))[1] AS last_message_id
+      FROM messages
+      WHERE channel IS NOT NULL
+      GROUP BY channel) s
+WHERE ch.id = s.channel;
+
+CREATE TABLE read_pointers
+(
+    user_id              BIGINT NOT NULL,
+    chat_id              BIGINT,
+    channel_id           BIGINT,
+    last_read_message_id BIGINT,
+    read_count           BIGINT NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    FOREIGN KEY (chat_id) REFERENCES chats (id) ON DELETE CASCADE,
+    FOREIGN KEY (channel_id) REFERENCES channels (id) ON DELETE CASCADE,
+    CHECK ((chat_id IS NULL) <> (channel_id IS NULL))
+);
+
+CREATE UNIQUE INDEX read_pointers_user_chat_idx ON read_pointers (user_id, chat_id) WHERE chat_id IS NOT NULL;
+CREATE UNIQUE INDEX read_pointers_user_channel_idx ON read_pointers (user_id, channel_id) WHERE channel_id IS NOT NULL;
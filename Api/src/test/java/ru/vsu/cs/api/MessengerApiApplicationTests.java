@@ -1,6 +1,7 @@
 package ru.vsu.cs.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.postgresql.shaded.com.ongres.scram.common.bouncycastle.base64.Base64;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,24 +10,75 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
+import ru.vsu.cs.api.config.WebSocketAuthorizationInterceptor;
 import ru.vsu.cs.api.dto.*;
 import ru.vsu.cs.api.dto.message.ChannelMessageCreationDto;
 import ru.vsu.cs.api.dto.message.ChatMessageCreationDto;
+import ru.vsu.cs.api.dto.message.ChatMessageSendDto;
 import ru.vsu.cs.api.models.*;
+import ru.vsu.cs.api.repositories.projections.ChannelSummary;
+import ru.vsu.cs.api.repositories.projections.ChatMembers;
+import ru.vsu.cs.api.repositories.projections.ConversationHead;
+import ru.vsu.cs.api.repositories.projections.MessageView;
+import ru.vsu.cs.api.repositories.projections.UnreadCounter;
+import ru.vsu.cs.api.repositories.projections.UserSummary;
 import ru.vsu.cs.api.services.*;
+import ru.vsu.cs.api.utils.MessageCursor;
 import ru.vsu.cs.api.utils.exceptions.ChannelException;
+import ru.vsu.cs.api.utils.exceptions.MessageException;
+import ru.vsu.cs.api.utils.exceptions.RateLimitException;
 import ru.vsu.cs.api.utils.exceptions.UserException;
 
-import java.math.BigInteger;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -42,6 +94,11 @@ class MessengerApiApplicationTests {
 
     private final MockMvc mockMvc;
     private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageBatchService messageBatchService;
+    private final WebSocketAuthorizationInterceptor webSocketAuthorizationInterceptor;
+    private final NotificationService notificationService;
+    private final ChannelMembershipService channelMembershipService;
     @MockBean
     private final UserService userService;
     @MockBean
@@ -56,11 +113,28 @@ class MessengerApiApplicationTests {
     private final RoleService roleService;
     @MockBean
     private final SavedMessageService savedMessageService;
+    @MockBean
+    private final BroadcastService broadcastService;
+    @MockBean
+    private final BlobStorageService blobStorageService;
+    @MockBean
+    private final ThumbnailService thumbnailService;
+    @MockBean
+    private final UnreadService unreadService;
+    @MockBean
+    private final InboxService inboxService;
+    @MockBean
+    private final RateLimitService rateLimitService;
 
     @Autowired
-    public MessengerApiApplicationTests(MockMvc mockMvc, ObjectMapper objectMapper, UserService userService, ChatService chatService, ChannelService channelService, MemberService memberService, MessageService messageService, RoleService roleService, SavedMessageService savedMessageService) {
+    public MessengerApiApplicationTests(MockMvc mockMvc, ObjectMapper objectMapper, JdbcTemplate jdbcTemplate, MessageBatchService messageBatchService, WebSocketAuthorizationInterceptor webSocketAuthorizationInterceptor, NotificationService notificationService, ChannelMembershipService channelMembershipService, UserService userService, ChatService chatService, ChannelService channelService, MemberService memberService, MessageService messageService, RoleService roleService, SavedMessageService savedMessageService, BroadcastService broadcastService, BlobStorageService blobStorageService, ThumbnailService thumbnailService, UnreadService unreadService, InboxService inboxService, RateLimitService rateLimitService) {
         this.mockMvc = mockMvc;
         this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageBatchService = messageBatchService;
+        this.webSocketAuthorizationInterceptor = webSocketAuthorizationInterceptor;
+        this.notificationService = notificationService;
+        this.channelMembershipService = channelMembershipService;
         this.userService = userService;
         this.chatService = chatService;
         this.channelService = channelService;
@@ -68,6 +142,12 @@ class MessengerApiApplicationTests {
         this.messageService = messageService;
         this.roleService = roleService;
         this.savedMessageService = savedMessageService;
+        this.broadcastService = broadcastService;
+        this.blobStorageService = blobStorageService;
+        this.thumbnailService = thumbnailService;
+        this.unreadService = unreadService;
+        this.inboxService = inboxService;
+        this.rateLimitService = rateLimitService;
     }
 
     @Test
@@ -126,8 +206,8 @@ class MessengerApiApplicationTests {
         userLoginDto.setPassword("secret");
 
         User user = new User();
-        user.setId(BigInteger.ONE);
-        user.setImage(null);
+        user.setId(1L);
+        user.setAvatarHash(null);
         user.setName("Name");
         user.setEmail("test@example.com");
         user.setPassword("secret");
@@ -145,8 +225,8 @@ class MessengerApiApplicationTests {
                 .andExpect(jsonPath("$.id", is(user.getId().intValue())))
                 .andExpect(jsonPath("$.name", is(user.getName())))
                 .andExpect(jsonPath("$.email", is(user.getEmail())))
-                .andExpect(jsonPath("$.password", is(user.getPassword())))
-                .andExpect(jsonPath("$.image", is(nullValue())))
+                .andExpect(jsonPath("$.password").doesNotExist())
+                .andExpect(jsonPath("$.avatarUrl", is(nullValue())))
                 .andExpect(jsonPath("$.channels", is(Collections.emptyList())))
                 .andExpect(jsonPath("$.chats", is(Collections.emptyList())))
                 .andExpect(jsonPath("$.savedMessages", is(Collections.emptyList())));
@@ -162,8 +242,8 @@ class MessengerApiApplicationTests {
         userLoginDto.setPassword(null);
 
         User user = new User();
-        user.setId(BigInteger.ONE);
-        user.setImage(null);
+        user.setId(1L);
+        user.setAvatarHash(null);
         user.setName("Name");
         user.setEmail("test@example.com");
         user.setPassword("secret");
@@ -186,13 +266,14 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User user = new User();
-        user.setId(BigInteger.ONE);
-        user.setImage(null);
+        user.setId(1L);
+        user.setAvatarHash(null);
         user.setName("Name");
         user.setEmail("test@example.com");
         user.setPassword("secret");
 
-        when(userService.getById(BigInteger.ONE)).thenReturn(user);
+        when(userService.getById(1L)).thenReturn(user);
+        when(userService.getProfileTag(user)).thenReturn("\"v1\"");
 
         ResultActions response = mockMvc.perform(get("/api/users/1")
                 .header("Authorization", "Basic " + base64Credentials)
@@ -203,11 +284,18 @@ class MessengerApiApplicationTests {
                 .andExpect(jsonPath("$.id", is(user.getId().intValue())))
                 .andExpect(jsonPath("$.name", is(user.getName())))
                 .andExpect(jsonPath("$.email", is(user.getEmail())))
-                .andExpect(jsonPath("$.password", is(user.getPassword())))
-                .andExpect(jsonPath("$.image", is(nullValue())))
+                .andExpect(jsonPath("$.password").doesNotExist())
+                .andExpect(jsonPath("$.avatarUrl", is(nullValue())))
                 .andExpect(jsonPath("$.channels", is(Collections.emptyList())))
                 .andExpect(jsonPath("$.chats", is(Collections.emptyList())))
-                .andExpect(jsonPath("$.savedMessages", is(Collections.emptyList())));
+                .andExpect(jsonPath("$.savedMessages", is(Collections.emptyList())))
+                .andExpect(header().string("ETag", "\"v1\""));
+
+        mockMvc.perform(get("/api/users/1")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
     }
 
     @Test
@@ -216,8 +304,8 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User user = new User();
-        user.setId(BigInteger.ONE);
-        user.setImage(null);
+        user.setId(1L);
+        user.setAvatarHash(null);
         user.setName("Name");
         user.setEmail("test@example.com");
         user.setPassword("secret");
@@ -257,7 +345,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(userService).updateName(BigInteger.ONE, "new_name");
+        doNothing().when(userService).updateName(1L, "new_name");
 
         ResultActions response = mockMvc.perform(put("/api/users/1/update/name")
                 .header("Authorization", "Basic " + base64Credentials)
@@ -273,7 +361,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(userService).updatePassword(BigInteger.ONE, "password", "new_password");
+        doNothing().when(userService).updatePassword(1L, "password", "new_password");
 
         ResultActions response = mockMvc.perform(put("/api/users/1/update/password")
                 .header("Authorization", "Basic " + base64Credentials)
@@ -290,7 +378,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(userService).updatePassword(BigInteger.ONE, null, "new_password");
+        doNothing().when(userService).updatePassword(1L, null, "new_password");
 
         ResultActions response = mockMvc.perform(put("/api/users/1/update/password")
                 .header("Authorization", "Basic " + base64Credentials)
@@ -306,7 +394,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(userService).updateEmail(BigInteger.ONE, "new_email");
+        doNothing().when(userService).updateEmail(1L, "new_email");
 
         ResultActions response = mockMvc.perform(put("/api/users/1/update/email")
                 .header("Authorization", "Basic " + base64Credentials)
@@ -322,7 +410,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(userService).updateImage(BigInteger.ONE, null);
+        doNothing().when(userService).updateImage(1L, null);
 
         ResultActions response = mockMvc.perform(delete("/api/users/1/delete_image")
                 .header("Authorization", "Basic " + base64Credentials)
@@ -332,6 +420,82 @@ class MessengerApiApplicationTests {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testGetAvatar() throws Exception {
+        Path avatar = Files.createTempFile("avatar", ".png");
+        Files.write(avatar, new byte[]{1, 2, 3});
+
+        when(userService.getAvatarHash(1L)).thenReturn("abc");
+        when(blobStorageService.getPath("abc")).thenReturn(avatar);
+        when(blobStorageService.getContentType("abc")).thenReturn("image/png");
+
+        mockMvc.perform(get("/api/users/1/avatar?v=abc"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string("Content-Disposition", "inline"))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+
+        mockMvc.perform(get("/api/users/1/avatar").header("If-None-Match", "\"abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Cache-Control", "no-cache, public"));
+
+        mockMvc.perform(get("/api/users/1/avatar").header("Range", "bytes=1-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 1-2/3"))
+                .andExpect(content().bytes(new byte[]{2, 3}));
+
+        mockMvc.perform(get("/api/users/1/avatar").header("Range", "bytes=5-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */3"));
+    }
+
+    @Test
+    void testGetAvatarThumbnail() throws Exception {
+        Path thumbnail = Files.createTempFile("avatar", ".jpg");
+        Files.write(thumbnail, new byte[]{4, 5});
+
+        when(userService.getAvatarHash(1L)).thenReturn("abc");
+        when(thumbnailService.resolve("abc", 64)).thenReturn("abc-64");
+        when(thumbnailService.resolve("abc", 256)).thenReturn("abc");
+        when(blobStorageService.getPath("abc-64")).thenReturn(thumbnail);
+        when(blobStorageService.getContentType("abc-64")).thenReturn("image/jpeg");
+        when(blobStorageService.getPath("abc")).thenReturn(thumbnail);
+        when(blobStorageService.getContentType("abc")).thenReturn("image/jpeg");
+
+        mockMvc.perform(get("/api/users/1/avatar?v=abc&size=64"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc-64\""))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+                .andExpect(content().bytes(new byte[]{4, 5}));
+
+        mockMvc.perform(get("/api/users/1/avatar?v=abc&size=256"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc\""))
+                .andExpect(header().string("Cache-Control", "no-cache, public"));
+    }
+
+    @Test
+    void testAvatarMustBeImage() throws Exception {
+        BlobStorageService storage = new BlobStorageService(Files.createTempDirectory("blobs").toString());
+        ThumbnailService thumbnails = new ThumbnailService(storage, 1);
+        byte[] html = "<html><script>alert(1)</script></html>".getBytes();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB), "png", png);
+        try {
+            assertFalse(thumbnails.isImage(html));
+            assertTrue(thumbnails.isImage(png.toByteArray()));
+            assertEquals("application/octet-stream",
+                    storage.getContentType(storage.put(new ByteArrayInputStream(html))));
+            assertEquals("image/png", storage.getContentType(storage.put(new ByteArrayInputStream(png.toByteArray()))));
+        } finally {
+            thumbnails.stop();
+        }
+    }
+
     @Test
     void testIsCorrectSendEmailRequest() throws Exception {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
@@ -345,6 +509,47 @@ class MessengerApiApplicationTests {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    void testGetUsersPage() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        User first = new User();
+        first.setId(3L);
+        first.setName("first");
+        User second = new User();
+        second.setId(4L);
+        second.setName("second");
+
+        Channel channel = new Channel(first, "channel");
+        channel.setId(1L);
+        Member member = new Member(channel, second, new Role("member", false, false));
+
+        Chat chat = new Chat();
+        chat.setId(1L);
+        chat.setUserFirst(first);
+        chat.setUserSecond(second);
+
+        List<User> users = List.of(first, second);
+        when(userService.getUsers(2L, 2)).thenReturn(users);
+        when(chatService.getChatsByUsers(users)).thenReturn(Map.of(3L, List.of(chat), 4L, List.of(chat)));
+        when(savedMessageService.getSavedMessagesByUsers(users)).thenReturn(Map.of());
+        when(memberService.getMembersByUsers(users)).thenReturn(Map.of(4L, List.of(member)));
+
+        mockMvc.perform(get("/api/users?after=2&limit=2")
+                        .header("Authorization", "Basic " + base64Credentials))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(3)))
+                .andExpect(jsonPath("$[0].chats[0].id", is(1)))
+                .andExpect(jsonPath("$[0].channels", is(Collections.emptyList())))
+                .andExpect(jsonPath("$[1].id", is(4)))
+                .andExpect(jsonPath("$[1].channels[0].name", is("channel")))
+                .andExpect(jsonPath("$[1].savedMessages", is(Collections.emptyList())));
+
+        verify(chatService, never()).getChatsByUser(any());
+    }
+
     @Test
     void testIsUnauthorized() throws Exception {
         mockMvc.perform(get("/api/users"))
@@ -357,11 +562,73 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
+        when(userService.getUserSummaries()).thenReturn(List.of(new UserSummary(1L, "curr_user", "abc")));
+
         mockMvc.perform(get("/api/chats")
                         .header("Authorization", "Basic " + base64Credentials)
                         .contentType(MediaType.APPLICATION_JSON))
                 .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("curr_user")))
+                .andExpect(jsonPath("$[0].avatarUrl", is("/api/users/1/avatar?v=abc&size=" + ThumbnailService.LIST_SIZE)))
+                .andExpect(jsonPath("$[0].online", is(false)));
+    }
+
+    @Test
+    void testHeartbeat() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        mockMvc.perform(put("/api/users/101/presence")
+                        .header("Authorization", "Basic " + base64Credentials))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users/presence")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("ids", "101", "102"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].userId", is(101)))
+                .andExpect(jsonPath("$[0].online", is(true)))
+                .andExpect(jsonPath("$[1].userId", is(102)))
+                .andExpect(jsonPath("$[1].online", is(false)))
+                .andExpect(jsonPath("$[1].lastSeen", nullValue()));
+
+        mockMvc.perform(delete("/api/users/101/presence")
+                        .header("Authorization", "Basic " + base64Credentials))
                 .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/users/presence")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("ids", "101"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].online", is(false)));
+    }
+
+    @Test
+    void testAddMessageToChatRateLimited() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        ChatMessageCreationDto chatMessageCreationDto = new ChatMessageCreationDto();
+        chatMessageCreationDto.setCurrentUsername("spammer");
+        chatMessageCreationDto.setOtherUsername("other_user");
+        chatMessageCreationDto.setMessage("Test");
+
+        doThrow(new RateLimitException("Слишком много сообщений, повторите попытку позже", 3))
+                .when(rateLimitService).acquire("spammer");
+
+        mockMvc.perform(post("/api/chats/add_message")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(chatMessageCreationDto)))
+                .andDo(print())
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"));
+
+        verify(userService, never()).getUserByName("spammer");
+        verify(messageService, never()).save(any());
     }
 
     @Test
@@ -375,26 +642,26 @@ class MessengerApiApplicationTests {
         chatMessageCreationDto.setMessage("Test");
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash("abc");
 
         User otherUser = new User();
-        otherUser.setId(BigInteger.TWO);
+        otherUser.setId(2L);
         otherUser.setName("other_user");
         otherUser.setEmail("other_user@example.com");
         otherUser.setPassword("secret");
-        otherUser.setImage(null);
+        otherUser.setAvatarHash(null);
 
         Chat chat = new Chat();
-        chat.setId(BigInteger.ONE);
+        chat.setId(1L);
         chat.setUserFirst(currentUser);
         chat.setUserSecond(otherUser);
 
         Message message = new Message();
-        message.setId(BigInteger.ONE);
+        message.setId(1L);
         message.setChat(chat);
         message.setSender(currentUser);
         message.setData(chatMessageCreationDto.getMessage());
@@ -416,14 +683,86 @@ class MessengerApiApplicationTests {
                 .andExpect(jsonPath("$.chat.id", is(chat.getId().intValue())))
                 .andExpect(jsonPath("$.chat.sender.id", is(chat.getUserFirst().getId().intValue())))
                 .andExpect(jsonPath("$.chat.sender.name", is(chat.getUserFirst().getName())))
-                .andExpect(jsonPath("$.chat.sender.image", is(chat.getUserFirst().getImage())))
+                .andExpect(jsonPath("$.chat.sender.avatarUrl", is("/api/users/1/avatar?v=abc&size=64")))
                 .andExpect(jsonPath("$.chat.recipient.id", is(chat.getUserSecond().getId().intValue())))
                 .andExpect(jsonPath("$.chat.recipient.name", is(chat.getUserSecond().getName())))
-                .andExpect(jsonPath("$.chat.recipient.image", is(chat.getUserSecond().getImage())))
+                .andExpect(jsonPath("$.chat.recipient.avatarUrl", is(nullValue())))
                 .andExpect(jsonPath("$.data", is(message.getData())))
                 .andExpect(jsonPath("$.sender.id", is(currentUser.getId().intValue())))
                 .andExpect(jsonPath("$.sender.name", is(currentUser.getName())))
-                .andExpect(jsonPath("$.sender.image", is(currentUser.getImage())));
+                .andExpect(jsonPath("$.sender.avatarUrl", is("/api/users/1/avatar?v=abc&size=64")));
+
+        verify(broadcastService).sendChatMessage(any());
+    }
+
+    @Test
+    void testSendMessageToChatById() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        ChatMessageSendDto chatMessageSendDto = new ChatMessageSendDto();
+        chatMessageSendDto.setCurrentUsername("other_user");
+        chatMessageSendDto.setMessage("Test");
+
+        User currentUser = new User();
+        currentUser.setId(1L);
+        currentUser.setName("curr_user");
+
+        User otherUser = new User();
+        otherUser.setId(2L);
+        otherUser.setName("other_user");
+
+        when(userService.getUserByName("other_user")).thenReturn(otherUser);
+        when(userService.getById(1L)).thenReturn(currentUser);
+        when(userService.getById(2L)).thenReturn(otherUser);
+        when(chatService.getMembers(1L)).thenReturn(new ChatMembers(1L, 1L, 2L));
+        when(messageService.save(any())).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setId(5L);
+            return message;
+        });
+
+        mockMvc.perform(post("/api/chats/1/messages")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(chatMessageSendDto)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(5)))
+                .andExpect(jsonPath("$.chat.id", is(1)))
+                .andExpect(jsonPath("$.chat.sender.name", is(currentUser.getName())))
+                .andExpect(jsonPath("$.chat.recipient.name", is(otherUser.getName())))
+                .andExpect(jsonPath("$.sender.name", is(otherUser.getName())))
+                .andExpect(jsonPath("$.data", is(chatMessageSendDto.getMessage())));
+
+        verify(chatService, never()).create(any());
+        verify(broadcastService).sendChatMessage(any());
+    }
+
+    @Test
+    void testSendMessageToChatByIdNotMember() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        ChatMessageSendDto chatMessageSendDto = new ChatMessageSendDto();
+        chatMessageSendDto.setCurrentUsername("stranger");
+        chatMessageSendDto.setMessage("Test");
+
+        User stranger = new User();
+        stranger.setId(3L);
+        stranger.setName("stranger");
+
+        when(userService.getUserByName("stranger")).thenReturn(stranger);
+        when(chatService.getMembers(1L)).thenReturn(new ChatMembers(1L, 1L, 2L));
+
+        mockMvc.perform(post("/api/chats/1/messages")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(chatMessageSendDto)))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+
+        verify(messageService, never()).save(any());
     }
 
     @Test
@@ -431,7 +770,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(chatService).delete(any());
+        doNothing().when(chatService).delete(anyLong());
 
         mockMvc.perform(delete("/api/chats/delete/1")
                         .header("Authorization", "Basic " + base64Credentials)
@@ -445,6 +784,23 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
+        User firstUser = new User();
+        firstUser.setId(1L);
+        firstUser.setName("first_user");
+
+        User secondUser = new User();
+        secondUser.setId(2L);
+        secondUser.setName("second_user");
+
+        Chat chat = new Chat();
+        chat.setId(1L);
+        chat.setUserFirst(firstUser);
+        chat.setUserSecond(secondUser);
+
+        when(userService.getUserByName("first_user")).thenReturn(firstUser);
+        when(userService.getUserByName("second_user")).thenReturn(secondUser);
+        when(chatService.getByUsernames(firstUser, secondUser)).thenReturn(chat);
+
         mockMvc.perform(get("/api/chats/usernames")
                         .header("Authorization", "Basic " + base64Credentials)
                         .param("first_user", "first_user")
@@ -467,12 +823,245 @@ class MessengerApiApplicationTests {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testGetChatByIdPage() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        User currentUser = new User();
+        currentUser.setId(1L);
+        currentUser.setName("curr_user");
+        currentUser.setEmail("curr_user@example.com");
+        currentUser.setPassword("secret");
+        currentUser.setAvatarHash(null);
+
+        User otherUser = new User();
+        otherUser.setId(2L);
+        otherUser.setName("other_user");
+        otherUser.setEmail("other_user@example.com");
+        otherUser.setPassword("secret");
+        otherUser.setAvatarHash(null);
+
+        Chat chat = new Chat();
+        chat.setId(1L);
+        chat.setUserFirst(currentUser);
+        chat.setUserSecond(otherUser);
+
+        MessageView first = new MessageView(1L, "first", LocalDateTime.now().minusMinutes(1), currentUser.getId(),
+                currentUser.getName(), null);
+        MessageView second = new MessageView(2L, "second", LocalDateTime.now(), otherUser.getId(),
+                otherUser.getName(), null);
+
+        MessageCursor before = new MessageCursor(LocalDateTime.now(), 10L);
+
+        when(chatService.getById(1L)).thenReturn(chat);
+        when(messageService.getMessagesByChat(eq(chat), any(), isNull(), eq(2)))
+                .thenReturn(List.of(first, second));
+
+        mockMvc.perform(get("/api/chats/1")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("before", before.encode())
+                        .param("limit", "2")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chat.id", is(chat.getId().intValue())))
+                .andExpect(jsonPath("$.messages[0].data", is(first.data())))
+                .andExpect(jsonPath("$.messages[0].sender.name", is(currentUser.getName())))
+                .andExpect(jsonPath("$.messages[1].data", is(second.data())))
+                .andExpect(jsonPath("$.messages[1].chat.id", is(chat.getId().intValue())))
+                .andExpect(jsonPath("$.previousCursor", is(MessageCursor.encode(first))))
+                .andExpect(jsonPath("$.nextCursor", is(MessageCursor.encode(second))));
+    }
+
+    @Test
+    void testGetChatByIdIncorrectCursor() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        mockMvc.perform(get("/api/chats/1")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("before", "not_a_cursor")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetChannelMessagesSince() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        User currentUser = new User();
+        currentUser.setId(1L);
+        currentUser.setName("curr_user");
+
+        Channel channel = new Channel();
+        channel.setId(1L);
+        channel.setName("test");
+        channel.setCreator(currentUser);
+
+        MessageView message = new MessageView(11L, "new message", LocalDateTime.now(), currentUser.getId(),
+                currentUser.getName(), null);
+
+        when(channelService.getChannelById(1L)).thenReturn(channel);
+        when(messageService.getMessagesByChannelAfterId(channel, 10L, MessageService.DEFAULT_PAGE_SIZE))
+                .thenReturn(List.of(message));
+
+        mockMvc.perform(get("/api/channels/1/since")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("after", "10")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(message.id().intValue())))
+                .andExpect(jsonPath("$[0].channelName", is(channel.getName())))
+                .andExpect(jsonPath("$[0].data", is(message.data())))
+                .andExpect(jsonPath("$[0].sender.name", is(currentUser.getName())));
+    }
+
+    @Test
+    void testGetUnread() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        User currentUser = new User();
+        currentUser.setId(1L);
+        currentUser.setName("curr_user");
+
+        when(userService.getById(1L)).thenReturn(currentUser);
+        when(unreadService.getUnread(1L)).thenReturn(List.of(
+                new UnreadCounter(5L, null, 12L, 40L, 9L, 31L),
+                new UnreadCounter(null, 3L, 4L, 41L, 4L, 41L)
+        ));
+
+        mockMvc.perform(get("/api/users/1/unread")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].chatId", is(5)))
+                .andExpect(jsonPath("$[0].unread", is(3)))
+                .andExpect(jsonPath("$[0].lastReadMessageId", is(31)))
+                .andExpect(jsonPath("$[1].channelId", is(3)))
+                .andExpect(jsonPath("$[1].unread", is(0)));
+    }
+
+    @Test
+    void testGetInbox() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        User currentUser = new User();
+        currentUser.setId(1L);
+        currentUser.setName("curr_user");
+
+        MessageView lastMessage = new MessageView(40L, "hello", LocalDateTime.now(), 2L, "other_user", null);
+
+        when(userService.getById(1L)).thenReturn(currentUser);
+        when(inboxService.getInbox(1L)).thenReturn(List.of(
+                new ConversationHead(5L, null, 2L, "other_user", "abc", 12L, 9L, lastMessage),
+                new ConversationHead(null, 3L, null, "test", null, 0L, 0L, null)
+        ));
+
+        mockMvc.perform(get("/api/users/1/inbox")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].chatId", is(5)))
+                .andExpect(jsonPath("$[0].name", is("other_user")))
+                .andExpect(jsonPath("$[0].unread", is(3)))
+                .andExpect(jsonPath("$[0].lastMessage.data", is("hello")))
+                .andExpect(jsonPath("$[0].lastMessage.sender.name", is("other_user")))
+                .andExpect(jsonPath("$[1].channelId", is(3)))
+                .andExpect(jsonPath("$[1].lastMessage", nullValue()));
+    }
+
+    @Test
+    void testChatTyping() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        when(chatService.getMembers(7L)).thenReturn(new ChatMembers(7L, 1L, 2L));
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(put("/api/chats/7/typing")
+                            .header("Authorization", "Basic " + base64Credentials)
+                            .param("user_id", "1"))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(put("/api/chats/7/typing")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("user_id", "1")
+                        .param("typing", "false"))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/api/chats/7/typing")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("user_id", "3"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+
+        verify(broadcastService, times(2)).sendTyping(any());
+        verify(messageService, never()).save(any());
+    }
+
+    @Test
+    void testMarkChatRead() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        User currentUser = new User();
+        currentUser.setId(1L);
+        currentUser.setName("curr_user");
+
+        when(userService.getUserByName("curr_user")).thenReturn(currentUser);
+
+        mockMvc.perform(put("/api/chats/5/read")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .param("username", "curr_user"))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        verify(unreadService).markChatRead(1L, 5L);
+    }
+
+    @Test
+    void testStreamChat() throws Exception {
+        String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
+        String base64Credentials = new String(Base64.encode(credentials.getBytes()));
+
+        Chat chat = new Chat();
+        chat.setId(1L);
+
+        when(chatService.getById(1L)).thenReturn(chat);
+        when(messageService.getMessagesByChatAfterId(eq(chat), eq(10L), anyInt()))
+                .thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/chats/1/stream")
+                        .header("Authorization", "Basic " + base64Credentials)
+                        .header("Last-Event-ID", "10"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+
+        verify(messageService).getMessagesByChatAfterId(eq(chat), eq(10L), anyInt());
+    }
+
     @Test
     void testGetChannels() throws Exception {
+        when(channelService.getChannelsTag()).thenReturn("\"v1\"");
+        when(channelService.getSummaries()).thenReturn(List.of(new ChannelSummary(1L, "test")));
+
         mockMvc.perform(get("/api/channels")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andDo(print())
-                .andExpect(status().isOk());
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v1\""))
+                .andExpect(jsonPath("$[0].name", is("test")));
+
+        mockMvc.perform(get("/api/channels")
+                        .header("If-None-Match", "\"v1\""))
+                .andExpect(status().isNotModified());
     }
 
     @Test
@@ -480,7 +1069,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(channelService).updateName(BigInteger.ONE, "new_name");
+        doNothing().when(channelService).updateName(1L, "new_name");
 
         mockMvc.perform(put("/api/channels/1/update")
                         .header("Authorization", "Basic " + base64Credentials)
@@ -495,7 +1084,7 @@ class MessengerApiApplicationTests {
         String credentials = SECURITY_USERNAME + ":" + SECURITY_PASSWORD;
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
-        doNothing().when(channelService).delete(any());
+        doNothing().when(channelService).delete(anyLong());
 
         mockMvc.perform(delete("/api/channels/delete/1")
                         .header("Authorization", "Basic " + base64Credentials)
@@ -515,20 +1104,20 @@ class MessengerApiApplicationTests {
         channelMessageCreationDto.setMessage("Test");
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("name");
         channel.setCreator(currentUser);
 
         Message message = new Message();
-        message.setId(BigInteger.ONE);
+        message.setId(1L);
         message.setChannel(channel);
         message.setSender(currentUser);
         message.setData(channelMessageCreationDto.getMessage());
@@ -550,7 +1139,9 @@ class MessengerApiApplicationTests {
                 .andExpect(jsonPath("$.data", is(message.getData())))
                 .andExpect(jsonPath("$.sender.id", is(currentUser.getId().intValue())))
                 .andExpect(jsonPath("$.sender.name", is(currentUser.getName())))
-                .andExpect(jsonPath("$.sender.image", is(currentUser.getImage())));
+                .andExpect(jsonPath("$.sender.avatarUrl", is(nullValue())));
+
+        verify(broadcastService).sendChannelMessage(eq(channel.getId()), any());
     }
 
     @Test
@@ -563,35 +1154,32 @@ class MessengerApiApplicationTests {
         channelCreationDto.setChannelName("test");
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Role role = new Role();
-        role.setId(BigInteger.ONE);
+        role.setId(1L);
         role.setName("owner");
         role.setIsAdmin(true);
         role.setIsCreator(true);
 
         Member member = new Member();
-        member.setId(BigInteger.ONE);
+        member.setId(1L);
         member.setUser(currentUser);
         member.setChannel(channel);
         member.setRole(role);
 
         when(userService.getUserByName(channelCreationDto.getUsername())).thenReturn(currentUser);
-        when(channelService.create(any())).thenReturn(channel);
-        when(roleService.save(any())).thenReturn(role);
-        doNothing().when(memberService).save(member);
+        when(channelService.create(any(), any())).thenReturn(channel);
         when(memberService.getMembersByChannel(channel)).thenReturn(Collections.singletonList(member));
-        when(messageService.getMessagesByChannel(channel)).thenReturn(Collections.emptyList());
 
         ResultActions response = mockMvc.perform(post("/api/channels/create")
                 .header("Authorization", "Basic " + base64Credentials)
@@ -604,10 +1192,10 @@ class MessengerApiApplicationTests {
                 .andExpect(jsonPath("$.channel.name", is(channel.getName())))
                 .andExpect(jsonPath("$.creator.id", is(channel.getCreator().getId().intValue())))
                 .andExpect(jsonPath("$.creator.name", is(channel.getCreator().getName())))
-                .andExpect(jsonPath("$.creator.image", is(channel.getCreator().getImage())))
+                .andExpect(jsonPath("$.creator.avatarUrl", is(nullValue())))
                 .andExpect(jsonPath("$.members[0].user.id", is(member.getUser().getId().intValue())))
                 .andExpect(jsonPath("$.members[0].user.name", is(member.getUser().getName())))
-                .andExpect(jsonPath("$.members[0].user.image", is(member.getUser().getImage())))
+                .andExpect(jsonPath("$.members[0].user.avatarUrl", is(nullValue())))
                 .andExpect(jsonPath("$.members[0].role.name", is(member.getRole().getName())))
                 .andExpect(jsonPath("$.members[0].role.admin", is(member.getRole().getIsAdmin())))
                 .andExpect(jsonPath("$.members[0].role.creator", is(member.getRole().getIsCreator())))
@@ -620,25 +1208,25 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Role role = new Role();
-        role.setId(BigInteger.ONE);
+        role.setId(1L);
         role.setName("member");
         role.setIsAdmin(false);
         role.setIsCreator(false);
 
         Member member = new Member();
-        member.setId(BigInteger.ONE);
+        member.setId(1L);
         member.setUser(currentUser);
         member.setChannel(channel);
         member.setRole(role);
@@ -663,25 +1251,25 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Role role = new Role();
-        role.setId(BigInteger.ONE);
+        role.setId(1L);
         role.setName("member");
         role.setIsAdmin(false);
         role.setIsCreator(false);
 
         Member member = new Member();
-        member.setId(BigInteger.ONE);
+        member.setId(1L);
         member.setUser(currentUser);
         member.setChannel(channel);
         member.setRole(role);
@@ -705,34 +1293,34 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Role role = new Role();
-        role.setId(BigInteger.ONE);
+        role.setId(1L);
         role.setName("member");
         role.setIsAdmin(false);
         role.setIsCreator(false);
 
         Member member = new Member();
-        member.setId(BigInteger.ONE);
+        member.setId(1L);
         member.setUser(currentUser);
         member.setChannel(channel);
         member.setRole(role);
 
         when(userService.getUserByName("curr_user")).thenReturn(currentUser);
-        when(channelService.getChannelById(BigInteger.ONE)).thenReturn(channel);
+        when(channelService.getChannelById(1L)).thenReturn(channel);
         when(memberService.getMemberByUserAndChannel(currentUser, channel)).thenReturn(member);
         doNothing().when(roleService).delete(member.getRole().getId());
-        doNothing().when(memberService).delete(member.getId());
+        doNothing().when(memberService).delete(member);
 
         mockMvc.perform(delete("/api/channels/1/leave")
                         .header("Authorization", "Basic " + base64Credentials)
@@ -748,25 +1336,25 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Role role = new Role();
-        role.setId(BigInteger.ONE);
+        role.setId(1L);
         role.setName("member");
         role.setIsAdmin(false);
         role.setIsCreator(false);
 
         Member member = new Member();
-        member.setId(BigInteger.ONE);
+        member.setId(1L);
         member.setUser(currentUser);
         member.setChannel(channel);
         member.setRole(role);
@@ -789,29 +1377,29 @@ class MessengerApiApplicationTests {
 
         SavedMessageDto savedMessageDto = new SavedMessageDto();
         savedMessageDto.setUsername("curr_user");
-        savedMessageDto.setMessageId(BigInteger.ONE);
+        savedMessageDto.setMessageId(1L);
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Message message = new Message();
-        message.setId(BigInteger.ONE);
+        message.setId(1L);
         message.setChannel(channel);
         message.setSender(currentUser);
         message.setData("Test save message!");
         message.setDate(LocalDateTime.now());
 
         when(userService.getUserByName(savedMessageDto.getUsername())).thenReturn(currentUser);
-        when(messageService.getMessage(BigInteger.ONE)).thenReturn(message);
+        when(messageService.getMessage(1L)).thenReturn(message);
         doNothing().when(savedMessageService).save(any());
 
         mockMvc.perform(post("/api/saved_message/save")
@@ -829,13 +1417,13 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
-        when(userService.getById(BigInteger.ONE)).thenReturn(currentUser);
+        when(userService.getById(1L)).thenReturn(currentUser);
         doNothing().when(savedMessageService).deleteAllByUser(currentUser);
 
         mockMvc.perform(delete("/api/saved_message/delete_all")
@@ -852,26 +1440,26 @@ class MessengerApiApplicationTests {
         String base64Credentials = new String(Base64.encode(credentials.getBytes()));
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Message message = new Message();
-        message.setId(BigInteger.ONE);
+        message.setId(1L);
         message.setChannel(channel);
         message.setSender(currentUser);
         message.setData("Test save message!");
         message.setDate(LocalDateTime.now());
 
-        when(userService.getById(BigInteger.ONE)).thenReturn(currentUser);
-        when(messageService.getMessage(BigInteger.ONE)).thenReturn(message);
+        when(userService.getById(1L)).thenReturn(currentUser);
+        when(messageService.getMessage(1L)).thenReturn(message);
         doNothing().when(savedMessageService).deleteAllByUser(currentUser);
 
         mockMvc.perform(delete("/api/saved_message/delete")
@@ -895,19 +1483,19 @@ class MessengerApiApplicationTests {
         roleCreationDto.setChannelName("test");
 
         User currentUser = new User();
-        currentUser.setId(BigInteger.ONE);
+        currentUser.setId(1L);
         currentUser.setName("curr_user");
         currentUser.setEmail("curr_user@example.com");
         currentUser.setPassword("secret");
-        currentUser.setImage(null);
+        currentUser.setAvatarHash(null);
 
         Channel channel = new Channel();
-        channel.setId(BigInteger.ONE);
+        channel.setId(1L);
         channel.setName("test");
         channel.setCreator(currentUser);
 
         Role role = new Role();
-        role.setId(BigInteger.ONE);
+        role.setId(1L);
         role.setName("member");
         role.setIsAdmin(false);
         role.setIsCreator(false);
@@ -919,7 +1507,7 @@ class MessengerApiApplicationTests {
         newRole.setIsCreator(false);
 
         Member member = new Member();
-        member.setId(BigInteger.ONE);
+        member.setId(1L);
         member.setUser(currentUser);
         member.setChannel(channel);
         member.setRole(role);
@@ -938,4 +1526,188 @@ class MessengerApiApplicationTests {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testGroupCommitRetriesFailedBatchOneByOne() throws Exception {
+        String suffix = UUID.randomUUID().toString();
+        Long firstUserId = jdbcTemplate.queryForObject(
+                "insert into users (name, email, password) values (?, ?, 'secret') returning id", Long.class,
+                "first_" + suffix, "first_" + suffix + "@example.com");
+        Long secondUserId = jdbcTemplate.queryForObject(
+                "insert into users (name, email, password) values (?, ?, 'secret') returning id", Long.class,
+                "second_" + suffix, "second_" + suffix + "@example.com");
+        Long chatId = jdbcTemplate.queryForObject(
+                "insert into chats (first_user, second_user) values (?, ?) returning id", Long.class,
+                firstUserId, secondUserId);
+
+        User sender = new User();
+        sender.setId(firstUserId);
+        sender.setVersion(0L);
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        Chat missingChat = new Chat();
+        missingChat.setId(-1L);
+
+        ReflectionTestUtils.setField(messageBatchService, "enabled", true);
+        ReflectionTestUtils.setField(messageBatchService, "maxDelay", 5000L);
+        ReflectionTestUtils.setField(messageBatchService, "maxBatchSize", 3);
+        messageBatchService.start();
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<Message> first = executor.submit(() -> messageBatchService.save(new Message(sender, chat, "first")));
+            Future<Message> broken = executor.submit(() -> messageBatchService.save(new Message(sender, missingChat, "broken")));
+            Future<Message> second = executor.submit(() -> messageBatchService.save(new Message(sender, chat, "second")));
+
+            assertNotNull(first.get(10, TimeUnit.SECONDS).getId());
+            assertNotNull(second.get(10, TimeUnit.SECONDS).getId());
+            assertThrows(ExecutionException.class, () -> broken.get(10, TimeUnit.SECONDS));
+            assertEquals(2, jdbcTemplate.queryForObject("select count(*) from messages where chat = ?",
+                    Long.class, chatId));
+        } finally {
+            executor.shutdown();
+            messageBatchService.stop();
+            ReflectionTestUtils.setField(messageBatchService, "enabled", false);
+            jdbcTemplate.update("delete from users where id in (?, ?)", firstUserId, secondUserId);
+        }
+    }
+
+    @Test
+    void testGroupCommitRejectsMessagesAfterStop() throws Exception {
+        ReflectionTestUtils.setField(messageBatchService, "enabled", true);
+        messageBatchService.start();
+        messageBatchService.stop();
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(MessageException.class,
+                    () -> messageBatchService.save(new Message(new User(), new Chat(), "late"))));
+        } finally {
+            ReflectionTestUtils.setField(messageBatchService, "enabled", false);
+        }
+    }
+
+    @Test
+    void testWebSocketRequiresAuthentication() throws Exception {
+        mockMvc.perform(get("/ws"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testWebSocketSubscriptionToForeignChatRejected() {
+        when(chatService.getMembers(7L)).thenReturn(new ChatMembers(7L, 1L, 2L));
+
+        assertDoesNotThrow(() -> webSocketAuthorizationInterceptor.preSend(subscribe(1L, "/topic/chats/7"), null));
+        assertDoesNotThrow(() -> webSocketAuthorizationInterceptor.preSend(subscribe(2L, "/topic/chats/7/typing"), null));
+        assertThrows(MessageDeliveryException.class,
+                () -> webSocketAuthorizationInterceptor.preSend(subscribe(3L, "/topic/chats/7"), null));
+        assertThrows(MessageDeliveryException.class,
+                () -> webSocketAuthorizationInterceptor.preSend(subscribe(null, "/topic/chats/7"), null));
+        assertThrows(MessageDeliveryException.class,
+                () -> webSocketAuthorizationInterceptor.preSend(subscribe(1L, "/topic/other"), null));
+    }
+
+    @Test
+    void testUserCacheReturnsDetachedCopies() {
+        UserCacheService userCacheService = new UserCacheService(new SimpleMeterRegistry(), 100, 60);
+        User user = new User();
+        user.setId(1L);
+        user.setVersion(0L);
+        user.setName("name");
+        user.setEmail("email@gmail.com");
+        user.setPassword("secret");
+
+        User loaded = userCacheService.getById(1L, id -> Optional.of(user)).orElseThrow();
+        loaded.setName("changed");
+        User cached = userCacheService.getByEmail("email@gmail.com", email -> Optional.empty()).orElseThrow();
+
+        assertNotSame(loaded, cached);
+        assertEquals("name", cached.getName());
+        assertEquals(0L, cached.getVersion());
+        assertNull(cached.getPassword());
+    }
+
+    @Test
+    void testUserCacheDropsRowLoadedBeforeEviction() {
+        UserCacheService userCacheService = new UserCacheService(new SimpleMeterRegistry(), 100, 60);
+        User stale = new User();
+        stale.setId(1L);
+        stale.setVersion(0L);
+        stale.setName("old");
+        stale.setEmail("email@gmail.com");
+        User fresh = new User();
+        fresh.setId(1L);
+        fresh.setVersion(1L);
+        fresh.setName("new");
+        fresh.setEmail("email@gmail.com");
+
+        userCacheService.getById(1L, id -> {
+            userCacheService.evict(fresh);
+            return Optional.of(stale);
+        });
+        User cached = userCacheService.getById(1L, id -> Optional.of(fresh)).orElseThrow();
+
+        assertEquals("new", cached.getName());
+        assertEquals(1L, cached.getVersion());
+    }
+
+    @Test
+    void testOwnInvalidationNotificationsAreIgnored() {
+        String suffix = UUID.randomUUID().toString();
+        Long userId = jdbcTemplate.queryForObject(
+                "insert into users (name, email, password) values (?, ?, 'secret') returning id", Long.class,
+                "user_" + suffix, "user_" + suffix + "@example.com");
+        Long channelId = jdbcTemplate.queryForObject(
+                "insert into channels (creator, name) values (?, ?) returning id", Long.class, userId, "channel_" + suffix);
+        String nodeId = (String) ReflectionTestUtils.getField(notificationService, "nodeId");
+        try {
+            assertEquals(0, channelMembershipService.getMembers(channelId).size());
+            jdbcTemplate.update("insert into members (channel_id, user_id) values (?, ?)", channelId, userId);
+
+            ReflectionTestUtils.invokeMethod(notificationService, "handle", "cache_invalidation",
+                    nodeId + "/CHANNEL:" + channelId);
+            assertEquals(0, channelMembershipService.getMembers(channelId).size());
+
+            ReflectionTestUtils.invokeMethod(notificationService, "handle", "cache_invalidation",
+                    UUID.randomUUID() + "/CHANNEL:" + channelId);
+            assertEquals(1, channelMembershipService.getMembers(channelId).size());
+        } finally {
+            jdbcTemplate.update("delete from users where id = ?", userId);
+        }
+    }
+
+    @Test
+    void testSlowStreamSubscriberDoesNotBlockPublisher() throws Exception {
+        StreamService streamService = new StreamService(messageService, 1, 0);
+        ExecutorService writer = (ExecutorService) ReflectionTestUtils.getField(streamService, "writer");
+        CountDownLatch stalled = new CountDownLatch(1);
+        writer.execute(() -> {
+            try {
+                stalled.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Chat chat = new Chat();
+        chat.setId(1L);
+        try {
+            streamService.subscribeToChat(chat, null);
+            String key = StreamService.getChatKey(1L);
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (long id = 1; id <= 202; id++) {
+                    streamService.publish(key, id, "message " + id);
+                }
+            });
+            assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(streamService, "subscriptions")).isEmpty());
+        } finally {
+            stalled.countDown();
+            streamService.stop();
+        }
+    }
+
+    private org.springframework.messaging.Message<byte[]> subscribe(Long userId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setSessionAttributes(new HashMap<>());
+        if (userId != null) {
+            accessor.getSessionAttributes().put("userId", userId);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
 }